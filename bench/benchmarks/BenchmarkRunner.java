@@ -0,0 +1,39 @@
+/**
+ * 
+ */
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMHのベンチマークをGCプロファイラ付きで実行するクラスです。<br>
+ * ベンチマークはsrcとは別のソースフォルダ（bench）に置き、JMH（jmh-coreとjmh-generator-annprocess）を
+ * クラスパスに加えてsrcのクラスと一緒にコンパイルします。例えば次のようにします。<br>
+ * <pre>
+ * javac -encoding UTF-8 -cp bin:jmh-core.jar:jmh-generator-annprocess.jar -d bench-bin bench/benchmarks/*.java
+ * java -cp bin:bench-bin:jmh-core.jar:jopt-simple.jar:commons-math3.jar benchmarks.BenchmarkRunner
+ * </pre>
+ * 問題はsrc/problemsから相対パスで読み込むので、プロジェクトのルートで実行してください。
+ * GCプロファイラが1回の呼び出しあたりの割り当てバイト数（gc.alloc.rate.norm）を出力するので、
+ * 探索の内側のループで割り当てが増えていないかを確認できます
+ * @author giginet
+ *
+ */
+public class BenchmarkRunner{
+  /**
+   * ベンチマークを実行します
+   * @param args 1つ目に実行するベンチマークの正規表現（省略時は全て）
+   * @throws RunnerException 実行に失敗したとき
+   */
+  public static void main(String[] args) throws RunnerException{
+    Options options = new OptionsBuilder()
+      .include(args.length > 0 ? args[0] : "benchmarks\\..*")
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * 
+ */
+package benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import main.AStarEngine;
+import main.PushGenerator;
+import main.SearchBudget;
+import main.Solver;
+import map.MapState;
+import deadlock.DeadlockChain;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 1つのノードを展開する処理を部分ごとに計測するベンチマークです。<br>
+ * 問題の解の途中の状態を用意しておき、1回の呼び出しで1つの状態を順番に処理します。
+ * 押し方の列挙、その場で押して戻す子状態の生成、デッドロック判定、見積もりの計算（以前のNode#calcCostに代わるAssignmentHeuristic）を別々に計測します
+ * @author giginet
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionBenchmark{
+  /** 状態を用意する問題の名前（Problems#load）です */
+  @Param({"problem3", "problem4", "room10"})
+  public String problem;
+
+  private int cursor = 0;
+  private DeadlockDetector detector = null;
+  private PushGenerator generator = null;
+  private AssignmentHeuristic heuristic = null;
+  private int[] pushes = null;
+  private MapState[] states = null;
+
+  /**
+   * 問題を解き、初期状態から解の各手を適用した状態を用意します
+   * @throws IOException 読み込みに失敗したとき
+   */
+  @Setup
+  public void setup() throws IOException{
+    MapState start = Problems.load(problem);
+    generator = new PushGenerator(start.getMap());
+    heuristic = new AssignmentHeuristic(start.getMap());
+    detector = DeadlockChain.createDefault();
+    pushes = new int[start.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length];
+    List<Integer> solution = new Solver(new AStarEngine(DeadlockChain.createDefault())).solve(start, new SearchBudget()).getPushes();
+    ArrayList<MapState> list = new ArrayList<MapState>();
+    MapState state = generator.normalize(start);
+    list.add(state);
+    for(int i=0;i<solution.size();++i){
+      state = generator.apply(state, solution.get(i));
+      list.add(state);
+    }
+    states = list.toArray(new MapState[list.size()]);
+  }
+
+  /**
+   * 次に処理する状態を返します
+   * @return 状態
+   */
+  private MapState next(){
+    MapState state = states[cursor];
+    cursor = cursor + 1 == states.length ? 0 : cursor + 1;
+    return state;
+  }
+
+  /**
+   * 押し方の列挙（到達可能範囲の塗りつぶしを含む）を計測します
+   * @return 列挙した押し方の数
+   */
+  @Benchmark
+  public int generate(){
+    return generator.generate(next(), pushes);
+  }
+
+  /**
+   * エンジンと同じ手順で1つのノードを展開し、全ての子状態を調べる処理を計測します
+   * @return 見積もりの合計
+   */
+  @Benchmark
+  public int expand(){
+    MapState state = next();
+    int chara = state.getCharaIndex();
+    int sum = 0;
+    heuristic.prepare(state);
+    int count = generator.generate(state, pushes);
+    for(int i=0;i<count;++i){
+      int to = generator.destinationOf(pushes[i]);
+      generator.make(state, pushes[i]);
+      if(!detector.isDeadlocked(state, to)){
+        sum += heuristic.estimateChild(state, PushGenerator.loadOf(pushes[i]), to);
+      }
+      generator.unmake(state, pushes[i], chara);
+    }
+    return sum;
+  }
+
+  /**
+   * 見積もりを最初から計算する処理を計測します
+   * @return 見積もり
+   */
+  @Benchmark
+  public int estimate(){
+    return heuristic.estimate(next());
+  }
+
+  /**
+   * 親の割り当てを再利用して、全ての子状態の見積もりを差分計算する処理を計測します
+   * @return 見積もりの合計
+   */
+  @Benchmark
+  public int estimateChildren(){
+    MapState state = next();
+    int chara = state.getCharaIndex();
+    int sum = 0;
+    heuristic.prepare(state);
+    int count = generator.generate(state, pushes);
+    for(int i=0;i<count;++i){
+      generator.make(state, pushes[i]);
+      sum += heuristic.estimateChild(state, PushGenerator.loadOf(pushes[i]), generator.destinationOf(pushes[i]));
+      generator.unmake(state, pushes[i], chara);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * 
+ */
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import map.Level;
+import map.LevelReader;
+import map.MapState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MapStateのハッシュ値、等価判定、コピーと、問題の読み込みを計測するベンチマークです
+ * @author giginet
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapStateBenchmark{
+  /** 計測に使う問題の名前（Problems#load）です */
+  @Param({"problem4", "room10"})
+  public String problem;
+
+  /** 問題集の読み込みで使う問題の数です */
+  static private final int COLLECTION_SIZE = 1000;
+
+  private byte[] collection = null;
+  private MapState other = null;
+  private MapState state = null;
+  private String text = null;
+
+  /**
+   * 問題を読み込み、等価判定の相手として同じ配置の別のオブジェクトを用意します
+   * @throws IOException 読み込みに失敗したとき
+   */
+  @Setup
+  public void setup() throws IOException{
+    text = Problems.text(problem);
+    state = MapState.parse(text);
+    other = MapState.parse(text);
+    collection = Problems.collection(COLLECTION_SIZE);
+  }
+
+  /**
+   * hashCode（差分更新済みのZobristハッシュ値）を計測します
+   * @return ハッシュ値
+   */
+  @Benchmark
+  public int hashCodeOf(){
+    return state.hashCode();
+  }
+
+  /**
+   * 同じ配置の別のオブジェクトとの等価判定を計測します
+   * @return 等しいかどうか
+   */
+  @Benchmark
+  public boolean equalsOther(){
+    return state.equals(other);
+  }
+
+  /**
+   * 状態のコピーを計測します
+   * @return コピーした状態
+   */
+  @Benchmark
+  public MapState deepClone(){
+    return state.deepClone();
+  }
+
+  /**
+   * 問題を表す文字列の読み込みを計測します
+   * @return 読み込んだ状態
+   */
+  @Benchmark
+  public MapState parse(){
+    return MapState.parse(text);
+  }
+
+  /**
+   * 問題集（COLLECTION_SIZE個の問題）をLevelReaderで全て読み込む処理を計測します
+   * @return 最後に読み込んだ問題
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Level readCollection(){
+    LevelReader reader = Problems.reader(collection);
+    Level last = null;
+    for(Level level = reader.next(); level != null; level = reader.next()){
+      last = level;
+    }
+    return last;
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * 
+ */
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import map.LevelReader;
+import map.MapState;
+
+/**
+ * ベンチマークで使う問題を用意するクラスです。<br>
+ * 「problem0」のような名前はsrc/problemsの問題を読み込み、「room8」のような名前は荷物の数を指定して大きな問題を生成します。
+ * 相対パスで読み込むので、プロジェクトのルートで実行してください
+ * @author giginet
+ *
+ */
+public class Problems{
+  /** 同梱の問題を置いたディレクトリです */
+  static public final String PROBLEM_DIRECTORY = "src/problems";
+
+  /**
+   * 名前から問題の初期状態を用意します
+   * @param name 同梱の問題のファイル名か、「room」の後に荷物の数を付けた名前
+   * @return 問題の初期状態
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static public MapState load(String name) throws IOException{
+    return MapState.parse(text(name));
+  }
+
+  /**
+   * 名前から問題を表す文字列（独自形式）を用意します
+   * @param name 同梱の問題のファイル名か、「room」の後に荷物の数を付けた名前
+   * @return 問題を表す文字列
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static public String text(String name) throws IOException{
+    if(name.startsWith("room")) return room(Integer.parseInt(name.substring(4)));
+    return new String(bytes(new File(PROBLEM_DIRECTORY, name)), "UTF-8");
+  }
+
+  /**
+   * ファイルの内容を全て読み込みます
+   * @param file 読み込むファイル
+   * @return ファイルの内容
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static public byte[] bytes(File file) throws IOException{
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+    try{
+      byte bytes[] = new byte[(int)input.length()];
+      input.readFully(bytes);
+      return bytes;
+    }finally{
+      input.close();
+    }
+  }
+
+  /**
+   * 横長の部屋に荷物を並べた問題を生成します。<br>
+   * 2行目に1マスおきに荷物を置き、右下の隅に2行に詰めてゴールを置きます。
+   * ゴールに詰める順番を考える必要があり、荷物の数に比例してマップも広くなります
+   * @param boxes 荷物の数
+   * @return 問題を表す文字列（独自形式）
+   */
+  static public String room(int boxes){
+    int width = boxes * 2 + 3;
+    StringBuilder builder = new StringBuilder();
+    for(int y=0;y<7;++y){
+      for(int x=0;x<width;++x){
+        boolean inside = 0 < x && x < width - 1 && 0 < y && y < 6;
+        if(!inside){
+          builder.append('#');
+        }else if(y == 1 && x == 1){
+          builder.append('@');
+        }else if(y == 2 && x % 2 == 0 && x < width - 2){
+          builder.append('*');
+        }else if(y >= 4 && (width - 2 - x) * 2 + (y - 4) < boxes){
+          builder.append('G');
+        }else{
+          builder.append('.');
+        }
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * 生成した問題を並べた問題集（独自形式）を作ります。LevelReaderのベンチマークで使います
+   * @param count 問題の数
+   * @return 問題集の内容
+   */
+  static public byte[] collection(int count){
+    StringBuilder builder = new StringBuilder();
+    for(int i=0;i<count;++i){
+      builder.append("; room").append(i).append('\n');
+      builder.append(room(i % 16 + 1)).append('\n');
+    }
+    try{
+      return builder.toString().getBytes("UTF-8");
+    }catch(UnsupportedEncodingException e){
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * 問題集の内容を読み込むLevelReaderを作ります
+   * @param bytes 問題集の内容
+   * @return 先頭から読み込むLevelReader
+   */
+  static public LevelReader reader(byte[] bytes){
+    return new LevelReader(ByteBuffer.wrap(bytes), "collection");
+  }
+}
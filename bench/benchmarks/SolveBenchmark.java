@@ -0,0 +1,91 @@
+/**
+ * 
+ */
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import main.SearchBudget;
+import main.SoukobanSolver;
+import main.SolveResult;
+import main.Solver;
+import map.MapState;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 問題を最初から最後まで解く時間を計測するベンチマークです。<br>
+ * 1回解くのにかかる時間に加えて、展開したノード数を補助カウンタ（nodes）として数えるので、
+ * 結果には1秒あたりの展開ノード数も出力されます
+ * @author giginet
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark{
+  /** 解く問題の名前（Problems#load）です */
+  @Param({"problem0", "problem1", "problem2", "problem3", "problem4", "problem5", "room6", "room10"})
+  public String problem;
+
+  /** 探索エンジンの名前（SoukobanSolver#createEngine）です */
+  @Param({"astar", "idastar", "parallel", "bidirectional"})
+  public String engine;
+
+  private MapState start = null;
+
+  /**
+   * 展開したノード数を数える補助カウンタです。JMHが計測時間で割り、1秒あたりの値として出力します
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters{
+    /** 展開したノード数です */
+    public long nodes = 0;
+
+    /**
+     * 計測の繰り返しごとにカウンタを0に戻します
+     */
+    @Setup(Level.Iteration)
+    public void reset(){
+      nodes = 0;
+    }
+  }
+
+  /**
+   * 問題を読み込みます
+   * @throws IOException 読み込みに失敗したとき
+   */
+  @Setup
+  public void setup() throws IOException{
+    start = Problems.load(problem);
+  }
+
+  /**
+   * 問題を解きます。探索エンジンは作業用のバッファを持つので、毎回生成します
+   * @param counters 展開したノード数を数えるカウンタ
+   * @return 探索の結果
+   */
+  @Benchmark
+  public SolveResult solve(Counters counters){
+    SolveResult result = new Solver(SoukobanSolver.createEngine(engine)).solve(start, new SearchBudget());
+    counters.nodes += result.getExpanded();
+    return result;
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * 
+ */
+package jfr;
+
+import main.SearchListener;
+import main.SearchMetrics;
+import main.SolveResult;
+
+/**
+ * 探索の途中経過をJFR（Java Flight Recorder）のイベントとして記録するリスナーです。<br>
+ * JFRのイベントAPIはJava 11以降でしか使えないので、Java 1.6向けのsrcとは別のソースフォルダ（jfr）に置いています。
+ * 記録中でなければイベントの値を写さないので、JFRを使っていないときの負荷はわずかです。<br>
+ * 例えば次のように予算に設定し、-XX:StartFlightRecordingを付けて実行します。
+ * <pre>
+ * SearchBudget budget = new SearchBudget().setListener(new JfrSearchListener(), 1000);
+ * </pre>
+ * @author giginet
+ *
+ */
+public class JfrSearchListener implements SearchListener{
+
+  public void progress(SearchMetrics metrics){
+    SearchProgressEvent event = new SearchProgressEvent();
+    if(!event.shouldCommit()) return;
+    event.set(metrics);
+    event.commit();
+  }
+
+  public void finished(SearchMetrics metrics, SolveResult result){
+    SearchFinishedEvent event = new SearchFinishedEvent();
+    if(!event.shouldCommit()) return;
+    event.set(metrics);
+    event.status = result.getStatus().name();
+    event.pushes = result.getPushCount();
+    event.moves = result.getMoveCount();
+    event.commit();
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 探索の終了を記録するJFRのイベントです。途中経過のイベントの値に加えて、探索が終わった理由と解の長さを持ちます
+ * @author giginet
+ *
+ */
+@Name("soukoban.SearchFinished")
+@Label("Search Finished")
+@Category("Soukoban")
+@Description("探索の終了")
+@StackTrace(false)
+public class SearchFinishedEvent extends SearchProgressEvent{
+  @Label("Status")
+  String status;
+
+  @Label("Pushes")
+  int pushes;
+
+  @Label("Moves")
+  int moves;
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import main.SearchMetrics;
+
+/**
+ * 探索の途中経過を記録するJFRのイベントです。
+ * JfrSearchListenerが、SearchBudgetに設定した間隔ごとに記録します
+ * @author giginet
+ *
+ */
+@Name("soukoban.SearchProgress")
+@Label("Search Progress")
+@Category("Soukoban")
+@Description("探索の途中経過")
+@StackTrace(false)
+public class SearchProgressEvent extends Event{
+  @Label("Expanded")
+  long expanded;
+
+  @Label("Expanded Per Second")
+  double expandedPerSecond;
+
+  @Label("Generated")
+  long generated;
+
+  @Label("Generated Per Second")
+  double generatedPerSecond;
+
+  @Label("Duplicate Rate")
+  double duplicateRate;
+
+  @Label("Deadlocks")
+  long deadlocks;
+
+  @Label("Open")
+  long open;
+
+  @Label("Closed")
+  long closed;
+
+  @Label("Best Cost")
+  int bestCost;
+
+  @Label("Best Estimate")
+  int bestEstimate;
+
+  @Label("Generation Time")
+  @Timespan(Timespan.MILLISECONDS)
+  long generationTime;
+
+  @Label("Heuristic Time")
+  @Timespan(Timespan.MILLISECONDS)
+  long heuristicTime;
+
+  /**
+   * 途中経過の集計をイベントの値に写します
+   * @param metrics 途中経過
+   */
+  void set(SearchMetrics metrics){
+    expanded = metrics.getExpanded();
+    expandedPerSecond = metrics.getExpandedPerSecond();
+    generated = metrics.getGenerated();
+    generatedPerSecond = metrics.getGeneratedPerSecond();
+    duplicateRate = metrics.getDuplicateRate();
+    deadlocks = metrics.getDeadlocks();
+    open = metrics.getOpenSize();
+    closed = metrics.getClosedSize();
+    bestCost = metrics.getBestCost();
+    bestEstimate = metrics.getBestEstimate();
+    generationTime = metrics.getGenerationTime();
+    heuristicTime = metrics.getHeuristicTime();
+  }
+}
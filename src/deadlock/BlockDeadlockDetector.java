@@ -0,0 +1,43 @@
+/**
+ * 
+ */
+package deadlock;
+
+import map.Map;
+import map.MapState;
+import util.Direction;
+
+/**
+ * 押した荷物を含む2×2のマスが全て壁か荷物で埋まっているかを調べるクラスです。<br>
+ * 埋まっている2×2の中にゴール上にない荷物が1つでもあれば、その荷物はもう動かせないのでデッドロックです
+ * @author giginet
+ *
+ */
+public class BlockDeadlockDetector implements DeadlockDetector{
+  /** 2×2の区画を作る縦方向、横方向、斜め方向の組です */
+  static private final Direction[][] SQUARES = {
+    {Direction.North, Direction.East, Direction.NorthEast},
+    {Direction.East, Direction.South, Direction.SouthEast},
+    {Direction.South, Direction.West, Direction.SouthWest},
+    {Direction.West, Direction.North, Direction.NorthWest}
+  };
+
+  public boolean isDeadlocked(MapState state, int load){
+    Map map = state.getMap();
+    for(int i=0;i<SQUARES.length;++i){
+      boolean offGoal = !map.isGoal(load);
+      boolean filled = true;
+      for(int j=0;j<SQUARES[i].length && filled;++j){
+        int index = map.moveIndex(load, SQUARES[i][j]);
+        if(index < 0 || !map.canThrough(index)) continue;
+        if(!state.hasLoad(index)){
+          filled = false;
+        }else if(!map.isGoal(index)){
+          offGoal = true;
+        }
+      }
+      if(filled && offGoal) return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,222 @@
+/**
+ * 
+ */
+package deadlock;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import map.Map;
+import map.MapState;
+import util.Direction;
+
+/**
+ * 荷物を押したことでキャラクターが入れなくなった区画（コラル）が、もう解けない状態になっていないかを調べるクラスです。<br>
+ * 押した荷物の隣にキャラクターが到達できない空きマスがあるときだけ判定します。
+ * コラルとそれを囲む荷物だけを残し、それ以外の荷物を取り除いた局所的な問題を幅優先で探索して、
+ * コラルの荷物を全てゴールに置くことも、コラルの外に押し出すこともできなければデッドロックとします。
+ * 荷物を取り除いても問題が難しくなることはないので、この判定でデッドロックとされた状態は必ず解けません。
+ * 探索が上限のノード数に達した場合はデッドロックではないとみなします
+ * @author giginet
+ *
+ */
+public class CorralDeadlockDetector implements DeadlockDetector{
+  /** 局所探索で展開するノード数の上限のデフォルト値です */
+  static public final int DEFAULT_NODE_LIMIT = 500;
+  static private final Direction[] DIRECTIONS = {Direction.North, Direction.East, Direction.South, Direction.West};
+
+  private long[] corral = null;
+  private long[] loads = null;
+  private int[] mark = null;
+  private int nodeLimit = 0;
+  private int[] queue = null;
+  private int[] region = null;
+  private int stamp = 0;
+
+  /**
+   * コンストラクタ。デフォルトのノード数の上限で判定します
+   */
+  public CorralDeadlockDetector(){
+    this(DEFAULT_NODE_LIMIT);
+  }
+
+  /**
+   * コンストラクタ。局所探索のノード数の上限を指定します
+   * @param nodeLimit 局所探索で展開するノード数の上限
+   */
+  public CorralDeadlockDetector(int nodeLimit){
+    this.nodeLimit = nodeLimit;
+  }
+
+  public boolean isDeadlocked(MapState state, int load){
+    Map map = state.getMap();
+    if(mark == null || mark.length != map.getCellCount()){
+      mark = new int[map.getCellCount()];
+      region = new int[map.getCellCount()];
+      queue = new int[map.getCellCount()];
+      loads = new long[map.wordCount()];
+      corral = new long[map.wordCount()];
+      stamp = 0;
+    }
+    // 作業用の配列は判定のたびに使い回す
+    Arrays.fill(loads, 0);
+    for(int index = state.nextLoad(0); index >= 0; index = state.nextLoad(index + 1)){
+      loads[index >> 6] |= 1L << index;
+    }
+    fill(map, loads, state.getCharaIndex());
+    int reached = stamp;
+    // 押した荷物の隣に、キャラクターが到達できない空きマスがあるときだけ調べる
+    int head = 0, tail = 0;
+    int regionStamp = nextStamp();
+    for(int i=0;i<DIRECTIONS.length;++i){
+      int next = map.moveIndex(load, DIRECTIONS[i]);
+      if(next < 0 || !map.canThrough(next) || hasLoad(loads, next) || mark[next] == reached) continue;
+      region[next] = regionStamp;
+      queue[tail++] = next;
+    }
+    if(tail == 0) return false;
+    // コラルの範囲を塗りつぶし、その中の荷物（コラルを囲む荷物を含む）を集める
+    Arrays.fill(corral, 0);
+    boolean allOnGoal = true;
+    while(head < tail){
+      int index = queue[head++];
+      if(hasLoad(loads, index)){
+        corral[index >> 6] |= 1L << index;
+        if(!map.isGoal(index)) allOnGoal = false;
+      }
+      for(int i=0;i<DIRECTIONS.length;++i){
+        int next = map.moveIndex(index, DIRECTIONS[i]);
+        if(next < 0 || !map.canThrough(next) || mark[next] == reached || region[next] == regionStamp) continue;
+        region[next] = regionStamp;
+        queue[tail++] = next;
+      }
+    }
+    if(allOnGoal) return false;
+    return !solveLocally(map, corral, state.getCharaIndex(), regionStamp);
+  }
+
+  /**
+   * コラルの荷物だけを残した局所的な問題を幅優先で探索します
+   * @param map マップ
+   * @param loads コラルの荷物のビット列
+   * @param chara キャラクターの位置
+   * @param regionStamp コラルの範囲を表す印
+   * @return 荷物を全てゴールに置けるか、コラルの外に押し出せるか、探索が上限に達したときtrue
+   */
+  private boolean solveLocally(Map map, long[] loads, int chara, int regionStamp){
+    ArrayDeque<long[]> states = new ArrayDeque<long[]>();
+    ArrayDeque<Integer> charas = new ArrayDeque<Integer>();
+    HashSet<Long> visited = new HashSet<Long>();
+    states.add(loads);
+    charas.add(chara);
+    int nodes = 0;
+    while(!states.isEmpty()){
+      long[] current = states.poll();
+      int min = fill(map, current, charas.poll());
+      long hash = map.getCharaKey(min);
+      for(int index = nextLoad(current, 0); index >= 0; index = nextLoad(current, index + 1)){
+        hash ^= map.getLoadKey(index);
+      }
+      if(!visited.add(hash)) continue;
+      if(++nodes > nodeLimit) return true;
+      int reached = stamp;
+      for(int load = nextLoad(current, 0); load >= 0; load = nextLoad(current, load + 1)){
+        for(int i=0;i<DIRECTIONS.length;++i){
+          int behind = map.moveIndex(load, DIRECTIONS[(i + 2) & 3]);
+          int to = map.moveIndex(load, DIRECTIONS[i]);
+          if(behind < 0 || mark[behind] != reached) continue;
+          if(to < 0 || !map.canThrough(to) || hasLoad(current, to) || map.isDeadSquare(to)) continue;
+          if(region[to] != regionStamp) return true; // コラルの外に押し出せた
+          long[] next = current.clone();
+          next[load >> 6] &= ~(1L << load);
+          next[to >> 6] |= 1L << to;
+          if(allOnGoal(map, next)) return true;
+          states.add(next);
+          charas.add(load);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 荷物を避けてキャラクターが到達できるマスを塗りつぶします
+   * @param map マップ
+   * @param loads 荷物のビット列
+   * @param chara キャラクターの位置
+   * @return 到達できるマスのうち一番小さいインデックス
+   */
+  private int fill(Map map, long[] loads, int chara){
+    int reached = nextStamp();
+    int head = 0, tail = 0;
+    int min = chara;
+    mark[chara] = reached;
+    queue[tail++] = chara;
+    while(head < tail){
+      int index = queue[head++];
+      if(index < min) min = index;
+      for(int i=0;i<DIRECTIONS.length;++i){
+        int next = map.moveIndex(index, DIRECTIONS[i]);
+        if(next < 0 || mark[next] == reached || !map.canThrough(next) || hasLoad(loads, next)) continue;
+        mark[next] = reached;
+        queue[tail++] = next;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * 塗りつぶしに使う新しい印を返します
+   * @return 印
+   */
+  private int nextStamp(){
+    if(++stamp == Integer.MAX_VALUE){
+      Arrays.fill(mark, 0);
+      Arrays.fill(region, 0);
+      stamp = 1;
+    }
+    return stamp;
+  }
+
+  /**
+   * 全ての荷物がゴール上にあるかどうかを返します
+   * @param map マップ
+   * @param loads 荷物のビット列
+   * @return 全てゴール上にあるかどうか
+   */
+  static private boolean allOnGoal(Map map, long[] loads){
+    long[] goals = map.getGoalBits();
+    for(int i=0;i<loads.length;++i){
+      if((loads[i] & ~goals[i]) != 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * ビット列のあるマスに荷物があるかどうかを返します
+   * @param loads 荷物のビット列
+   * @param index マスのインデックス
+   * @return 荷物があるかどうか
+   */
+  static private boolean hasLoad(long[] loads, int index){
+    return (loads[index >> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * ビット列の中で、指定したインデックス以降で最初に荷物があるマスを返します
+   * @param loads 荷物のビット列
+   * @param from 検索を始めるマスのインデックス
+   * @return 荷物があるマスのインデックス。見つからない場合は-1
+   */
+  static private int nextLoad(long[] loads, int from){
+    int word = from >> 6;
+    if(word >= loads.length) return -1;
+    long bits = loads[word] & (-1L << from);
+    while(true){
+      if(bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+      if(++word == loads.length) return -1;
+      bits = loads[word];
+    }
+  }
+}
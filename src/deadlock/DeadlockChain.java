@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package deadlock;
+
+import java.util.ArrayList;
+
+import map.MapState;
+
+/**
+ * 複数のDeadlockDetectorを登録した順に実行するクラスです。<br>
+ * どれか1つがデッドロックと判定した時点で打ち切るので、軽い判定から順に登録してください
+ * @author giginet
+ *
+ */
+public class DeadlockChain implements DeadlockDetector{
+  private ArrayList<DeadlockDetector> detectors = null;
+
+  /**
+   * コンストラクタ。判定を1つも持たない空のチェーンを生成します
+   */
+  public DeadlockChain(){
+    detectors = new ArrayList<DeadlockDetector>();
+  }
+
+  /**
+   * 2×2の区画、凍結、コラルの順に判定する標準のチェーンを生成します
+   * @return 標準のチェーン
+   */
+  static public DeadlockChain createDefault(){
+    return new DeadlockChain().add(new BlockDeadlockDetector()).add(new FreezeDeadlockDetector()).add(new CorralDeadlockDetector());
+  }
+
+  /**
+   * 判定を末尾に追加します
+   * @param detector 追加する判定
+   * @return このチェーン自身
+   */
+  public DeadlockChain add(DeadlockDetector detector){
+    detectors.add(detector);
+    return this;
+  }
+
+  public boolean isDeadlocked(MapState state, int load){
+    for(int i=0;i<detectors.size();++i){
+      if(detectors.get(i).isDeadlocked(state, load)) return true;
+    }
+    return false;
+  }
+}
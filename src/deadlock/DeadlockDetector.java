@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package deadlock;
+
+import map.MapState;
+
+/**
+ * 荷物を押した直後の状態が、もう解けない状態（デッドロック）になっていないかを調べるインターフェースです。<br>
+ * 探索中は押すたびに呼ばれるので、実装は軽い判定を先に行ってください
+ * @author giginet
+ *
+ */
+public interface DeadlockDetector{
+  /**
+   * 荷物を押した直後の状態がデッドロックかどうかを判定します。<br>
+   * trueを返した場合、その状態からゴールに到達できないことが保証されている必要があります
+   * @param state 荷物を押した後の状態
+   * @param load 押された荷物の移動先のマスのインデックス
+   * @return デッドロックかどうか
+   */
+  public boolean isDeadlocked(MapState state, int load);
+}
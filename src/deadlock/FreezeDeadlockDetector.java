@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package deadlock;
+
+import map.Map;
+import map.MapState;
+import util.Direction;
+
+/**
+ * 押した荷物が縦にも横にも動かせなくなった（凍結した）かどうかを調べるクラスです。<br>
+ * 荷物は、ある軸の両側のどちらかが壁であるか、両側ともデッドスクエアであるか、
+ * 隣の荷物が凍結しているとき、その軸には動かせません。隣の荷物を調べるときは、調べている荷物を壁とみなします。
+ * 凍結した荷物のうち1つでもゴール上になければデッドロックです
+ * @author giginet
+ *
+ */
+public class FreezeDeadlockDetector implements DeadlockDetector{
+  private int[] frozen = null;
+  private int frozenCount = 0;
+  private boolean[] walls = null;
+
+  public boolean isDeadlocked(MapState state, int load){
+    Map map = state.getMap();
+    if(walls == null || walls.length != map.getCellCount()){
+      walls = new boolean[map.getCellCount()];
+      frozen = new int[map.getCellCount()];
+    }
+    frozenCount = 0;
+    if(!isFrozen(state, load)) return false;
+    for(int i=0;i<frozenCount;++i){
+      if(!map.isGoal(frozen[i])) return true;
+    }
+    return false;
+  }
+
+  /**
+   * ある荷物が凍結しているかどうかを調べます。凍結していた場合、連鎖して凍結している荷物と共に一覧に追加します
+   * @param state 現在の状態
+   * @param load 調べる荷物のあるマスのインデックス
+   * @return 凍結しているかどうか
+   */
+  private boolean isFrozen(MapState state, int load){
+    int mark = frozenCount;
+    walls[load] = true;
+    boolean result = isBlocked(state, load, Direction.West, Direction.East) && isBlocked(state, load, Direction.North, Direction.South);
+    walls[load] = false;
+    if(result){
+      frozen[frozenCount++] = load;
+    }else{
+      frozenCount = mark;
+    }
+    return result;
+  }
+
+  /**
+   * ある荷物がある軸に沿って動かせないかどうかを調べます
+   * @param state 現在の状態
+   * @param load 調べる荷物のあるマスのインデックス
+   * @param d1 軸の一方の向き
+   * @param d2 軸のもう一方の向き
+   * @return 動かせないかどうか
+   */
+  private boolean isBlocked(MapState state, int load, Direction d1, Direction d2){
+    Map map = state.getMap();
+    int n1 = map.moveIndex(load, d1);
+    int n2 = map.moveIndex(load, d2);
+    if(isWall(map, n1) || isWall(map, n2)) return true;
+    if(map.isDeadSquare(n1) && map.isDeadSquare(n2)) return true;
+    if(state.hasLoad(n1) && isFrozen(state, n1)) return true;
+    if(state.hasLoad(n2) && isFrozen(state, n2)) return true;
+    return false;
+  }
+
+  /**
+   * あるマスが壁か、壁とみなしている荷物かどうかを返します
+   * @param map マップ
+   * @param index マスのインデックス
+   * @return 壁とみなせるかどうか
+   */
+  private boolean isWall(Map map, int index){
+    return index < 0 || !map.canThrough(index) || walls[index];
+  }
+}
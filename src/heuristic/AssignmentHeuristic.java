@@ -0,0 +1,86 @@
+/**
+ * 
+ */
+package heuristic;
+
+import map.Map;
+import map.MapState;
+import util.Hungarian;
+
+/**
+ * 荷物とゴールの最小コストの割り当てを見積もりとするクラスです。<br>
+ * 各荷物から各ゴールまでの、壁を考慮した押す回数の最小値（Map#getPushDistanceTable）をコストとし、
+ * 荷物を1つずつ別々のゴールに割り当てたときの総コストの最小値をハンガリアン法で求めます。
+ * 荷物同士の干渉を無視しているので、この見積もりは実際の押す回数を超えません（許容的です）。<br>
+ * 子の状態を見積もるときは、親の割り当ての双対変数を引き継ぎ、押した荷物の行だけを入れ替えて解き直します
+ * @author giginet
+ *
+ */
+public class AssignmentHeuristic implements IncrementalHeuristic{
+  private int[] distances = null;
+  private int goalCount = 0;
+  private Map map = null;
+  private Hungarian parent = null;
+  private int[] parentOffsets = null;
+  private int parentTotal = INFINITY;
+  private Hungarian work = null;
+  private int[] workOffsets = null;
+
+  /**
+   * コンストラクタ
+   * @param map 探索するマップ
+   */
+  public AssignmentHeuristic(Map map){
+    this.map = map;
+    this.goalCount = map.getGoalIndices().length;
+    this.distances = map.getPushDistanceTable();
+    this.parent = new Hungarian(goalCount);
+    this.parentOffsets = new int[goalCount];
+    this.work = new Hungarian(goalCount);
+    this.workOffsets = new int[goalCount];
+  }
+
+  public int estimate(MapState state){
+    if(!setRows(state, workOffsets)) return INFINITY;
+    int total = work.solve(distances, workOffsets);
+    if(total >= Hungarian.INFINITY) return INFINITY;
+    return total;
+  }
+
+  public int prepare(MapState state){
+    parentTotal = INFINITY;
+    if(!setRows(state, parentOffsets)) return INFINITY;
+    int total = parent.solve(distances, parentOffsets);
+    if(total >= Hungarian.INFINITY) return INFINITY;
+    parentTotal = total;
+    return total;
+  }
+
+  public int estimateChild(MapState child, int from, int to){
+    if(parentTotal == INFINITY || map.isDeadSquare(to)) return INFINITY;
+    // 押した荷物の行だけを入れ替え、親の割り当てから解き直す
+    int row = 0;
+    while(parentOffsets[row] != from * goalCount) ++row;
+    System.arraycopy(parentOffsets, 0, workOffsets, 0, goalCount);
+    workOffsets[row] = to * goalCount;
+    work.copyFrom(parent);
+    int total = work.repair(distances, workOffsets, row);
+    if(total >= Hungarian.INFINITY) return INFINITY;
+    return total;
+  }
+
+  /**
+   * 荷物ごとに、押す回数の表の中でその荷物の行が始まる位置を求めます
+   * @param state 現在の状態
+   * @param offsets 位置を格納する配列
+   * @return デッドスクエアに荷物がある場合はfalse
+   */
+  private boolean setRows(MapState state, int[] offsets){
+    int row = 0;
+    for(int load = state.nextLoad(0); load >= 0; load = state.nextLoad(load + 1), ++row){
+      if(map.isDeadSquare(load)) return false;
+      offsets[row] = load * goalCount;
+    }
+    return true;
+  }
+}
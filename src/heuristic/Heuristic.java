@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package heuristic;
+
+import map.MapState;
+
+/**
+ * ある状態からゴールまでに必要な荷物を押す回数を見積もるインターフェースです
+ * @author giginet
+ *
+ */
+public interface Heuristic{
+  /** ゴールに到達できないことを表す見積もりです */
+  static public final int INFINITY = Integer.MAX_VALUE;
+
+  /**
+   * ある状態からゴールまでに必要な荷物を押す回数を見積もります
+   * @param state 見積もる状態
+   * @return 押す回数の見積もり。ゴールに到達できないことがわかった場合はINFINITY
+   */
+  public int estimate(MapState state);
+}
@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package heuristic;
+
+import map.MapState;
+
+/**
+ * 親の状態の計算結果を使い回して、荷物を1回押した子の状態を差分で見積もるインターフェースです。<br>
+ * 探索では、あるノードを展開する前に{@link #prepare(MapState)}を呼び、
+ * そのノードから生成した子の状態ごとに{@link #estimateChild(MapState, int, int)}を呼びます
+ * @author giginet
+ *
+ */
+public interface IncrementalHeuristic extends Heuristic{
+  /**
+   * これから展開する親の状態を見積もり、子の見積もりに使う結果を保持します
+   * @param parent 親の状態
+   * @return 親の状態の見積もり
+   */
+  public int prepare(MapState parent);
+
+  /**
+   * 直前にprepareした親の状態から、荷物を1回押した子の状態を見積もります
+   * @param child 子の状態
+   * @param from 押した荷物の元のマスのインデックス
+   * @param to 押した荷物の移動先のマスのインデックス
+   * @return 子の状態の見積もり。ゴールに到達できないことがわかった場合はINFINITY
+   */
+  public int estimateChild(MapState child, int from, int to);
+}
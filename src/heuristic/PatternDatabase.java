@@ -0,0 +1,476 @@
+/**
+ * 
+ */
+package heuristic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import main.SearchBudget;
+import map.Map;
+import map.MapState;
+import util.Direction;
+
+/**
+ * 荷物同士の干渉を考慮した見積もりに使うパターンデータベースです。<br>
+ * ゴールを近いものからいくつかずつの組（パターン）に分け、組ごとに、その数の荷物だけを置いた盤面で
+ * 荷物を全てその組のゴールに運ぶのに必要な押す回数の最小値を、ゴールから荷物を引く幅優先探索で全ての荷物の配置について求めておきます。
+ * キャラクターの位置は区別せず、一番小さい値を記録します。<br>
+ * ある状態の見積もりは、組ごとに荷物の中から組のゴールの数だけ選ぶ配置の値の最小値を求め、それらを足し合わせるか最大値をとります。
+ * 他の荷物を無視し、別々の組のゴールには別々の荷物が運ばれるので、どちらの組み合わせ方でも許容的です。<br>
+ * 表は盤面ごとに1つのファイルに保存し、読み込むときはメモリにマップするので、同じ盤面を再び解くときは作り直しません。
+ * 読み込んだ表は書き換えないので、複数のスレッドから使えます
+ * @author giginet
+ *
+ */
+public class PatternDatabase{
+  /** 1つの組に含めるゴールの数のデフォルト値です */
+  static public final int DEFAULT_SIZE = 2;
+  /** 表を保存するディレクトリのデフォルト値です */
+  static public final File DEFAULT_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "soukoban-pdb");
+  /** ファイルの先頭に書き込む値です */
+  static private final int MAGIC = 0x50444231;
+  /** 1つの組の探索で扱う状態の数の上限です。超える場合は組のゴールの数を減らします */
+  static private final long STATE_LIMIT = 1L << 25;
+  /** 表を作るときに予算を調べる間隔（展開した状態の数）です */
+  static private final int CHECK_INTERVAL = 4096;
+  /** 荷物を組のゴールに運べない配置を表す値です */
+  static private final int UNREACHED = 0xff;
+  static private final Direction[] DIRECTIONS = {Direction.North, Direction.East, Direction.South, Direction.West};
+
+  private int[][] binomials = null;
+  private MappedByteBuffer buffer = null;
+  private int[] cellOf = null;
+  private int[] compact = null;
+  private Map map = null;
+  private int[] offsets = null;
+  private int[][] patterns = null;
+
+  /**
+   * コンストラクタ。荷物を置けるマスの番号付けと、ゴールの組分けを決めます
+   * @param map 探索するマップ
+   * @param size 1つの組に含めるゴールの数
+   */
+  private PatternDatabase(Map map, int size){
+    this.map = map;
+    // 荷物を置けるのはデッドスクエアでない床だけなので、そのマスだけに番号を振る
+    compact = new int[map.getCellCount()];
+    int count = 0;
+    for(int i=0;i<compact.length;++i){
+      compact[i] = map.canThrough(i) && !map.isDeadSquare(i) ? count++ : -1;
+    }
+    cellOf = new int[count];
+    for(int i=0;i<compact.length;++i){
+      if(compact[i] >= 0) cellOf[compact[i]] = i;
+    }
+    size = Math.max(1, Math.min(size, map.getGoalIndices().length));
+    while(size > 1 && choose(count, size) * compact.length > STATE_LIMIT) --size;
+    binomials = new int[count + 1][size + 1];
+    for(int n=0;n<=count;++n){
+      binomials[n][0] = 1;
+      for(int r=1;r<=size && r<=n;++r){
+        binomials[n][r] = binomials[n - 1][r - 1] + (r < n ? binomials[n - 1][r] : 0);
+      }
+    }
+    patterns = group(size);
+  }
+
+  /**
+   * マップのパターンデータベースを、デフォルトの組の大きさで読み込みます
+   * @param map 探索するマップ
+   * @param directory 表を保存するディレクトリ
+   * @return パターンデータベース
+   * @throws IOException 表を読み書きできないとき
+   */
+  static public PatternDatabase load(Map map, File directory) throws IOException{
+    return load(map, DEFAULT_SIZE, directory);
+  }
+
+  /**
+   * マップのパターンデータベースを読み込みます。同じ盤面の表が保存されていなければ作って保存します
+   * @param map 探索するマップ
+   * @param size 1つの組に含めるゴールの数。状態が多すぎる場合は減らします
+   * @param directory 表を保存するディレクトリ。なければ作ります
+   * @return パターンデータベース
+   * @throws IOException 表を読み書きできないとき
+   */
+  static public PatternDatabase load(Map map, int size, File directory) throws IOException{
+    return load(map, size, directory, null);
+  }
+
+  /**
+   * マップのパターンデータベースを読み込みます。同じ盤面の表が保存されていなければ作って保存します。<br>
+   * 表を作る間も一定の間隔で予算を調べ、中断を要求されたり時間やメモリの上限に達したりした場合は、保存せずに打ち切ります
+   * @param map 探索するマップ
+   * @param size 1つの組に含めるゴールの数。状態が多すぎる場合は減らします
+   * @param directory 表を保存するディレクトリ。なければ作ります
+   * @param budget 探索の予算。nullの場合は打ち切りません
+   * @return パターンデータベース。表を作る途中で打ち切った場合はnull
+   * @throws IOException 表を読み書きできないとき
+   */
+  static public PatternDatabase load(Map map, int size, File directory, SearchBudget budget) throws IOException{
+    PatternDatabase database = new PatternDatabase(map, size);
+    File file = new File(directory, "pdb-" + Long.toHexString(fingerprintOf(map, size)) + ".bin");
+    if(file.exists() && database.open(file)) return database;
+    if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("ディレクトリ" + directory + "を作れません");
+    // 書き終えてから名前を変えるので、書きかけのファイルを他の探索が読むことはない
+    File temporary = File.createTempFile("pdb", ".tmp", directory);
+    try{
+      if(!database.write(temporary, budget)) return null;
+      if(!temporary.renameTo(file) && !file.exists()) throw new IOException(file + "に保存できません");
+    }finally{
+      if(temporary.exists() && !temporary.delete()) temporary.deleteOnExit();
+    }
+    if(!database.open(file)) throw new IOException(file + "を読み込めません");
+    return database;
+  }
+
+  /**
+   * 状態を見積もります
+   * @param state 見積もる状態
+   * @param work 作業用の配列。荷物の数以上の長さが必要です
+   * @param additive 組ごとの値を足し合わせるかどうか。falseの場合は最大値をとります
+   * @return 押す回数の見積もり。ゴールに到達できないことがわかった場合はHeuristic.INFINITY
+   */
+  public int estimate(MapState state, int[] work, boolean additive){
+    int count = 0;
+    for(int load = state.nextLoad(0); load >= 0; load = state.nextLoad(load + 1)){
+      if(compact[load] < 0) return Heuristic.INFINITY;
+      work[count++] = compact[load];
+    }
+    int result = 0;
+    for(int p=0;p<patterns.length;++p){
+      int value = minimum(offsets[p], patterns[p].length, work, count, 0, 0, 0);
+      if(value == UNREACHED) return Heuristic.INFINITY;
+      result = additive ? result + value : Math.max(result, value);
+    }
+    return result;
+  }
+
+  /**
+   * 組の数を返します
+   * @return 組の数
+   */
+  public int getPatternCount(){
+    return patterns.length;
+  }
+
+  /**
+   * 組に含まれるゴールを返します
+   * @param index 組の番号
+   * @return ゴールのインデックスの配列。呼び出し側で変更しないでください
+   */
+  public int[] getPattern(int index){
+    return patterns[index];
+  }
+
+  /**
+   * 荷物の中から組のゴールの数だけ選ぶ全ての配置について表を引き、最小値を求めます
+   * @param offset 組の表のファイル上の位置
+   * @param size 組のゴールの数
+   * @param loads 荷物のマスの番号。小さい順に並んでいる必要があります
+   * @param count 荷物の数
+   * @param chosen 選んだ荷物の数
+   * @param start 次に選ぶ荷物の添字の最小値
+   * @param rank 選んだ荷物から求めた、表の添字の途中までの値
+   * @return 表の値の最小値
+   */
+  private int minimum(int offset, int size, int[] loads, int count, int chosen, int start, int rank){
+    if(chosen == size) return buffer.get(offset + rank) & 0xff;
+    int result = UNREACHED;
+    for(int i=start;i<=count - (size - chosen) && result > 0;++i){
+      result = Math.min(result, minimum(offset, size, loads, count, chosen + 1, i + 1, rank + binomials[loads[i]][chosen + 1]));
+    }
+    return result;
+  }
+
+  /**
+   * ゴールを、近いものからsize個ずつの組に分けます。最後の組は少なくなることがあります
+   * @param size 1つの組に含めるゴールの数
+   * @return 組ごとの、ゴールのインデックスを小さい順に並べた配列
+   */
+  private int[][] group(int size){
+    int[] goals = map.getGoalIndices();
+    boolean[] used = new boolean[goals.length];
+    int remaining = goals.length;
+    ArrayList<int[]> result = new ArrayList<int[]>();
+    for(int i=0;i<goals.length;++i){
+      if(used[i]) continue;
+      int[] pattern = new int[Math.min(size, remaining)];
+      pattern[0] = goals[i];
+      used[i] = true;
+      for(int j=1;j<pattern.length;++j){
+        int nearest = -1;
+        for(int k=0;k<goals.length;++k){
+          if(used[k]) continue;
+          if(nearest < 0 || distance(goals[i], goals[k]) < distance(goals[i], goals[nearest])) nearest = k;
+        }
+        pattern[j] = goals[nearest];
+        used[nearest] = true;
+      }
+      remaining -= pattern.length;
+      Arrays.sort(pattern);
+      result.add(pattern);
+    }
+    return result.toArray(new int[result.size()][]);
+  }
+
+  /**
+   * 2つのマスのマンハッタン距離を求めます
+   * @param a マスのインデックス
+   * @param b マスのインデックス
+   * @return 距離
+   */
+  private int distance(int a, int b){
+    return Map.manhattanDistance(map.pointOf(a), map.pointOf(b));
+  }
+
+  /**
+   * 1つの組の表を作ります。<br>
+   * 組のゴールに荷物を置いた状態から幅優先で荷物を引き、初めて展開した荷物の配置に引いた回数を記録します。
+   * 状態はキャラクターの位置を正規化せずに登録し、展開するときに到達可能範囲の左上に正規化して重複を除きます
+   * @param pattern 組のゴール
+   * @param budget 探索の予算。nullの場合は打ち切りません
+   * @return 荷物の配置ごとの押す回数の表。254回以上は254とします。予算を使い切った場合はnull
+   */
+  private byte[] build(int[] pattern, SearchBudget budget){
+    int size = pattern.length, cells = compact.length;
+    byte[] table = new byte[binomials[cellOf.length][size]];
+    Arrays.fill(table, (byte)UNREACHED);
+    BitSet seen = new BitSet(), expanded = new BitSet();
+    boolean[] occupied = new boolean[cells];
+    int[] boxes = new int[size], moved = new int[size];
+    int[] mark = new int[cells], queue = new int[cells];
+    int stamp = 0, visited = 0;
+    // 荷物以外の全てのマスを、最後にキャラクターがいる位置の候補にする
+    int start = rankOf(pattern, true);
+    int[] current = new int[cells];
+    int length = 0;
+    for(int goal : pattern){
+      occupied[goal] = true;
+    }
+    for(int i=0;i<cells;++i){
+      if(!map.canThrough(i) || occupied[i]) continue;
+      seen.set(start * cells + i);
+      current[length++] = start * cells + i;
+    }
+    Arrays.fill(occupied, false);
+    for(int depth=0;length > 0;++depth){
+      int[] next = new int[16];
+      int nextLength = 0;
+      for(int n=0;n<length;++n){
+        if(budget != null && visited++ % CHECK_INTERVAL == 0 && !budget.check()) return null;
+        int rank = current[n] / cells;
+        unrank(rank, boxes);
+        for(int box : boxes){
+          occupied[box] = true;
+        }
+        ++stamp;
+        int min = reach(current[n] % cells, occupied, mark, queue, stamp);
+        if(!expanded.get(rank * cells + min)){
+          expanded.set(rank * cells + min);
+          if((table[rank] & 0xff) == UNREACHED) table[rank] = (byte)Math.min(depth, UNREACHED - 1);
+          for(int j=0;j<size;++j){
+            for(Direction d : DIRECTIONS){
+              // 荷物の隣に立ち、さらに1マス下がりながら荷物を引く
+              int to = map.moveIndex(boxes[j], d);
+              if(to < 0 || mark[to] != stamp || compact[to] < 0) continue;
+              int chara = map.moveIndex(to, d);
+              if(chara < 0 || !map.canThrough(chara) || occupied[chara]) continue;
+              System.arraycopy(boxes, 0, moved, 0, size);
+              moved[j] = to;
+              int id = rankOf(moved, false) * cells + chara;
+              if(seen.get(id)) continue;
+              seen.set(id);
+              if(nextLength == next.length) next = Arrays.copyOf(next, next.length * 2);
+              next[nextLength++] = id;
+            }
+          }
+        }
+        for(int box : boxes){
+          occupied[box] = false;
+        }
+      }
+      current = next;
+      length = nextLength;
+    }
+    return table;
+  }
+
+  /**
+   * キャラクターが到達可能なマスを幅優先で塗りつぶします
+   * @param chara キャラクターの位置のインデックス
+   * @param occupied 荷物のあるマス
+   * @param mark 塗りつぶしたマスにstampを書き込む配列
+   * @param queue 作業用の配列
+   * @param stamp 書き込む値
+   * @return 到達可能なマスのうち一番小さいインデックス
+   */
+  private int reach(int chara, boolean[] occupied, int[] mark, int[] queue, int stamp){
+    int head = 0, tail = 0, min = chara;
+    queue[tail++] = chara;
+    mark[chara] = stamp;
+    while(head < tail){
+      int index = queue[head++];
+      if(index < min) min = index;
+      for(Direction d : DIRECTIONS){
+        int next = map.moveIndex(index, d);
+        if(next < 0 || mark[next] == stamp || !map.canThrough(next) || occupied[next]) continue;
+        mark[next] = stamp;
+        queue[tail++] = next;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * 荷物の配置から表の添字を求めます
+   * @param boxes 荷物のマスのインデックス
+   * @param sorted 小さい順に並んでいるかどうか。並んでいない場合は並べ替えます
+   * @return 表の添字
+   */
+  private int rankOf(int[] boxes, boolean sorted){
+    if(!sorted) Arrays.sort(boxes);
+    int rank = 0;
+    for(int i=0;i<boxes.length;++i){
+      rank += binomials[compact[boxes[i]]][i + 1];
+    }
+    return rank;
+  }
+
+  /**
+   * 表の添字から荷物の配置を求めます
+   * @param rank 表の添字
+   * @param boxes 荷物のマスのインデックスを小さい順に格納する配列
+   */
+  private void unrank(int rank, int[] boxes){
+    int c = cellOf.length - 1;
+    for(int i=boxes.length - 1;i>=0;--i){
+      while(binomials[c][i + 1] > rank) --c;
+      rank -= binomials[c][i + 1];
+      boxes[i] = cellOf[c];
+      --c;
+    }
+  }
+
+  /**
+   * 表をファイルに書き込みます
+   * @param file 書き込むファイル
+   * @param budget 探索の予算。nullの場合は打ち切りません
+   * @return 全ての表を書き込めたかどうか。予算を使い切った場合はfalse
+   * @throws IOException 書き込めないとき
+   */
+  private boolean write(File file, SearchBudget budget) throws IOException{
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try{
+      writeHeader(out);
+      for(int[] pattern : patterns){
+        byte[] table = build(pattern, budget);
+        if(table == null) return false;
+        out.write(table);
+      }
+      return true;
+    }finally{
+      out.close();
+    }
+  }
+
+  /**
+   * ファイルの先頭に、盤面と組分けを書き込みます。読み込むときはこの部分が一致するか確かめます
+   * @param out 書き込む先
+   * @throws IOException 書き込めないとき
+   */
+  private void writeHeader(DataOutputStream out) throws IOException{
+    out.writeInt(MAGIC);
+    out.writeInt(map.getWidth());
+    out.writeInt(map.getHeight());
+    for(int i=0;i<compact.length;++i){
+      out.writeByte(map.getCellType(i));
+    }
+    out.writeInt(patterns.length);
+    for(int[] pattern : patterns){
+      out.writeInt(pattern.length);
+      for(int goal : pattern){
+        out.writeInt(goal);
+      }
+    }
+  }
+
+  /**
+   * ファイルをメモリにマップし、各組の表の位置を求めます
+   * @param file 読み込むファイル
+   * @return 盤面と組分けが一致し、表が揃っていればtrue
+   * @throws IOException 読み込めないとき
+   */
+  private boolean open(File file) throws IOException{
+    RandomAccessFile store = new RandomAccessFile(file, "r");
+    try{
+      FileChannel channel = store.getChannel();
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      // 書き込むときと同じ内容をバイト列にして比べる
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      writeHeader(new DataOutputStream(header));
+      byte[] expected = header.toByteArray();
+      if(mapped.limit() < expected.length) return false;
+      for(int i=0;i<expected.length;++i){
+        if(mapped.get(i) != expected[i]) return false;
+      }
+      int[] positions = new int[patterns.length];
+      long position = expected.length;
+      for(int p=0;p<patterns.length;++p){
+        positions[p] = (int)position;
+        position += binomials[cellOf.length][patterns[p].length];
+      }
+      if(position != mapped.limit()) return false;
+      buffer = mapped;
+      offsets = positions;
+      return true;
+    }finally{
+      // マップした領域はチャンネルを閉じても使える
+      store.close();
+    }
+  }
+
+  /**
+   * 盤面と組の大きさから、ファイル名に使う64bitのハッシュ値（FNV-1a）を求めます
+   * @param map マップ
+   * @param size 1つの組に含めるゴールの数
+   * @return ハッシュ値
+   */
+  static private long fingerprintOf(Map map, int size){
+    long hash = 0xcbf29ce484222325L;
+    int[] values = {map.getWidth(), map.getHeight(), size};
+    for(int value : values){
+      hash = (hash ^ value) * 0x100000001b3L;
+    }
+    for(int i=0;i<map.getCellCount();++i){
+      hash = (hash ^ map.getCellType(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * 二項係数を求めます
+   * @param n 全体の数
+   * @param r 選ぶ数
+   * @return 二項係数。STATE_LIMITを超える場合はSTATE_LIMIT+1
+   */
+  static private long choose(int n, int r){
+    long result = 1;
+    for(int i=0;i<r;++i){
+      result = result * (n - i) / (i + 1);
+      if(result > STATE_LIMIT) return STATE_LIMIT + 1;
+    }
+    return result;
+  }
+}
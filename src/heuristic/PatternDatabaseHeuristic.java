@@ -0,0 +1,56 @@
+/**
+ * 
+ */
+package heuristic;
+
+import map.Map;
+import map.MapState;
+
+/**
+ * 荷物とゴールの割り当て（AssignmentHeuristic）とパターンデータベース（PatternDatabase）の見積もりのうち、大きい方を見積もりとするクラスです。<br>
+ * どちらも許容的なので、大きい方も許容的です。割り当ては親の状態から差分で求め、パターンデータベースは表を引くだけなので子ごとに求めます
+ * @author giginet
+ *
+ */
+public class PatternDatabaseHeuristic implements IncrementalHeuristic{
+  private boolean additive = true;
+  private AssignmentHeuristic assignment = null;
+  private PatternDatabase database = null;
+  private int[] work = null;
+
+  /**
+   * コンストラクタ
+   * @param map 探索するマップ
+   * @param database マップのパターンデータベース
+   * @param additive 組ごとの値を足し合わせるかどうか。falseの場合は最大値をとります
+   */
+  public PatternDatabaseHeuristic(Map map, PatternDatabase database, boolean additive){
+    this.assignment = new AssignmentHeuristic(map);
+    this.database = database;
+    this.additive = additive;
+    this.work = new int[map.getGoalIndices().length];
+  }
+
+  public int estimate(MapState state){
+    return combine(assignment.estimate(state), state);
+  }
+
+  public int prepare(MapState parent){
+    return combine(assignment.prepare(parent), parent);
+  }
+
+  public int estimateChild(MapState child, int from, int to){
+    return combine(assignment.estimateChild(child, from, to), child);
+  }
+
+  /**
+   * 割り当ての見積もりと、パターンデータベースの見積もりの大きい方を返します
+   * @param estimate 割り当ての見積もり
+   * @param state 見積もる状態
+   * @return 見積もり
+   */
+  private int combine(int estimate, MapState state){
+    if(estimate == INFINITY) return INFINITY;
+    return Math.max(estimate, database.estimate(state, work, additive));
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import map.Map;
+import map.MapState;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+import heuristic.Heuristic;
+import heuristic.IncrementalHeuristic;
+import heuristic.PatternDatabase;
+import heuristic.PatternDatabaseHeuristic;
+
+/**
+ * A*で探索するエンジンです。<br>
+ * 生成した全てのノードを優先度付きキューと置換表に保持するので、押す回数が最小の解が得られますが、
+ * 状態数に比例したメモリを使います。<br>
+ * ゴール部屋のマクロ（PushGenerator#setMacros）を使う設定では、押す回数が最小の解が得られるとは限りません
+ * @author giginet
+ *
+ */
+public class AStarEngine implements SearchEngine{
+  private boolean additive = true;
+  private File databaseDirectory = null;
+  private DeadlockDetector detector = null;
+  private boolean goalRooms = false;
+
+  /**
+   * コンストラクタ。ゴール部屋のマクロは使いません
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   */
+  public AStarEngine(DeadlockDetector detector){
+    this(detector, false);
+  }
+
+  /**
+   * コンストラクタ
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   * @param goalRooms ゴール部屋のマクロを使うかどうか
+   */
+  public AStarEngine(DeadlockDetector detector, boolean goalRooms){
+    this.detector = detector;
+    this.goalRooms = goalRooms;
+  }
+
+  /**
+   * パターンデータベース（PatternDatabase）を見積もりに使うように設定します。表は探索を始めるときに読み込み、なければ作って保存します。
+   * 表を作る時間も探索の予算に含め、作る途中で中断を要求されたり上限に達したりした場合は探索せずに打ち切ります
+   * @param directory 表を保存するディレクトリ。nullの場合はパターンデータベースを使いません
+   * @param additive 組ごとの値を足し合わせるかどうか。falseの場合は最大値をとります
+   * @return このインスタンス自身
+   */
+  public AStarEngine setPatternDatabase(File directory, boolean additive){
+    this.databaseDirectory = directory;
+    this.additive = additive;
+    return this;
+  }
+
+  public List<Integer> search(MapState startState, SearchBudget budget){
+    OpenList queue = new OpenList();
+    TranspositionTable visited = new TranspositionTable();
+    NodeStore store = new NodeStore();
+    MetricsCounter counter = new MetricsCounter(budget);
+    PushGenerator generator = new PushGenerator(startState.getMap());
+    generator.setMacros(true, goalRooms);
+    IncrementalHeuristic heuristic = createHeuristic(startState.getMap(), budget);
+    if(heuristic == null) return null;
+    MapState initialState = generator.normalize(startState);
+    int initialEstimate = heuristic.estimate(initialState);
+    if(initialEstimate == Heuristic.INFINITY) return null;
+    Node initial = new Node(initialState, initialEstimate, generator.keyOf(initialState));
+    visited.offer(initial.getKey(), 0);
+    queue.add(initial);
+    Node current = null;
+    int pushes[] = new int[startState.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length];
+    // 1回荷物を押すことを1手として展開する
+    while(true){
+      current = queue.poll();
+      if(current == null) return null;
+      if(current.getCurrent().isGoal())
+        break;
+      // より少ない手数で同じ状態に到達済みのノードは展開しない
+      if(current.getDepth() > visited.get(current.getKey())) continue;
+      if(!budget.consume()) return null;
+      // 展開したノードだけを親として登録する。状態はキューから取り除いた時点で不要になる
+      int id = store.add(current.getParent(), current.getPush());
+      MapState map = current.getCurrent();
+      int chara = map.getCharaIndex();
+      long time = counter.now();
+      heuristic.prepare(map);
+      counter.estimated(time);
+      time = counter.now();
+      int count = generator.generate(map, pushes);
+      counter.generated(count, time);
+      for(int i = 0; i < count; ++i){
+        // 展開中の状態をその場で書き換えて子状態を調べ、調べ終わったら元に戻す
+        generator.make(map, pushes[i]);
+        Node node = child(map, id, current.getDepth() + generator.lengthOf(pushes[i]), pushes[i], visited, generator, heuristic, counter);
+        generator.unmake(map, pushes[i], chara);
+        if(node != null) queue.add(node);
+      }
+      counter.expanded(current.getCost(), current.getEstimate());
+      counter.resize(queue.size(), visited.size());
+      counter.flush();
+    }
+    // 探索結果をたどり、押し方の列を求める
+    return generator.unfold(store.path(current));
+  }
+
+  /**
+   * 荷物を押した後の状態を調べ、展開する価値があれば状態をコピーしてノードを生成します。<br>
+   * 調べている間は状態をコピーしないので、捨てられる子状態のためにオブジェクトを生成しません
+   * @param map 荷物を押した後の状態。この状態は呼び出し側が元に戻すので、ノードにはコピーを持たせます
+   * @param parent 親ノードのNodeStoreでの番号
+   * @param depth 初期状態からの手数
+   * @param push 親ノードから適用した押し方の番号
+   * @param visited 置換表
+   * @param generator 押し方の生成器
+   * @param heuristic 見積もりの計算器。親の状態でprepare済みである必要があります
+   * @param counter 途中経過を数えるカウンタ
+   * @return 生成したノード。同じ状態に到達済みか、もう解けない状態の場合はnull
+   */
+  private Node child(MapState map, int parent, int depth, int push, TranspositionTable visited, PushGenerator generator, IncrementalHeuristic heuristic, MetricsCounter counter){
+    // 未調査か、より少ない手数で到達できた場合のみ、Queueに新しいノードを生成して格納
+    // 対称な盤面では、回転や鏡映で重なる状態も同じ状態として扱う
+    long key = generator.keyOf(map);
+    if(!visited.offer(key, depth)){
+      counter.duplicate();
+      return null;
+    }
+    int to = generator.destinationOf(push);
+    // もう解けない状態は展開しない
+    if(detector.isDeadlocked(map, to)){
+      counter.deadlock();
+      return null;
+    }
+    long time = counter.now();
+    int estimate = heuristic.estimateChild(map, PushGenerator.loadOf(push), to);
+    counter.estimated(time);
+    if(estimate == Heuristic.INFINITY) return null;
+    return new Node(map.deepClone(), parent, depth, push, estimate, key);
+  }
+
+  /**
+   * 見積もりの計算器を生成します。パターンデータベースの表を作る間も予算を調べます
+   * @param map 探索するマップ
+   * @param budget 探索の予算
+   * @return 見積もりの計算器。表を作る途中で予算を使い切った場合はnull
+   */
+  private IncrementalHeuristic createHeuristic(Map map, SearchBudget budget){
+    if(databaseDirectory == null) return new AssignmentHeuristic(map);
+    try{
+      PatternDatabase database = PatternDatabase.load(map, PatternDatabase.DEFAULT_SIZE, databaseDirectory, budget);
+      return database == null ? null : new PatternDatabaseHeuristic(map, database, additive);
+    }catch(IOException e){
+      throw new IllegalStateException(e);
+    }
+  }
+}
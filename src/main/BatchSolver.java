@@ -0,0 +1,253 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import map.Level;
+import map.LevelReader;
+import map.MapState;
+
+/**
+ * 複数の問題をまとめて解くクラスです。<br>
+ * ディレクトリ内の全てのファイル、または複数の問題を含む問題集のファイル（XSB/.sok形式か独自形式）を読み込み、
+ * 大きさを固定したスレッドプールで並行に解きます。<br>
+ * 重い問題が軽い問題を待たせ続けないように、問題ごとに探索時間の上限を設け、小さい問題から順に解きます。
+ * 結果は解けた順に、1問題につき1行のJSON（JSONL形式）で出力します
+ * @author giginet
+ *
+ */
+public class BatchSolver{
+  /** 問題ごとの探索時間の上限のデフォルト値（ミリ秒）です */
+  static public final long DEFAULT_TIME_LIMIT = 60000;
+  /** 探索を打ち切るヒープ使用量の、ヒープの最大サイズに対する割合のデフォルト値です */
+  static public final double DEFAULT_MEMORY_RATIO = 0.85;
+
+  private SolutionCache cache = null;
+  private String engine = null;
+  private long memoryLimit = 0;
+  private int threads = 0;
+  private long timeLimit = 0;
+
+  /**
+   * コンストラクタ
+   * @param engine 探索エンジンの名前（SoukobanSolver#createEngine）
+   * @param threads 同時に解く問題の数
+   * @param timeLimit 問題ごとの探索時間の上限（ミリ秒）
+   */
+  public BatchSolver(String engine, int threads, long timeLimit){
+    if(threads < 1) throw new IllegalArgumentException("スレッド数は1以上である必要があります");
+    this.engine = engine;
+    this.threads = threads;
+    this.timeLimit = timeLimit;
+    this.memoryLimit = (long)(Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_RATIO);
+  }
+
+  /**
+   * 問題ごとの使用メモリの上限を設定します。<br>
+   * 予算はJVM全体のヒープ使用量で判定するので（SearchBudget#setMemoryLimit）、同時に解いている問題のどれかがメモリを使い過ぎると、
+   * ヒープが尽きる前にその時点で探索している問題がMemoryLimitで打ち切られます。デフォルトはヒープの最大サイズのDEFAULT_MEMORY_RATIO倍です
+   * @param memoryLimit 使用メモリの上限（バイト）
+   * @return このインスタンス自身
+   */
+  public BatchSolver setMemoryLimit(long memoryLimit){
+    this.memoryLimit = memoryLimit;
+    return this;
+  }
+
+  /**
+   * 解のキャッシュを設定します。保存済みの問題は探索せずに解を返し、新しく解けた問題の解を保存します
+   * @param cache 解のキャッシュ
+   * @return このインスタンス自身
+   */
+  public BatchSolver setCache(SolutionCache cache){
+    this.cache = cache;
+    return this;
+  }
+
+  /**
+   * 問題を全て解き、結果をJSONL形式で出力します
+   * @param levels 解く問題の一覧
+   * @param out 結果の出力先。複数のスレッドから書き込まれますが、1行ずつまとめて書き込みます
+   * @throws InterruptedException 全ての問題が解き終わるのを待つ間に割り込まれたとき
+   */
+  public void solve(List<Level> levels, final Writer out) throws InterruptedException{
+    // 荷物が少なく、マップが小さい問題から解く
+    ArrayList<Integer> order = new ArrayList<Integer>();
+    for(int i=0;i<levels.size();++i){
+      order.add(i);
+    }
+    final List<Level> all = levels;
+    Collections.sort(order, new Comparator<Integer>(){
+      public int compare(Integer a, Integer b){
+        long sizeA = weightOf(all.get(a));
+        long sizeB = weightOf(all.get(b));
+        return sizeA < sizeB ? -1 : sizeA > sizeB ? 1 : a.compareTo(b);
+      }
+    });
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try{
+      for(final int index : order){
+        final Level level = levels.get(index);
+        pool.execute(new Runnable(){
+          public void run(){
+            String record;
+            try{
+              // 探索エンジンは作業用のバッファを持つので、問題ごとに生成する
+              Solver solver = new Solver(SoukobanSolver.createEngine(engine), cache);
+              SolveResult result = solver.solve(level.getState(), new SearchBudget().setTimeLimit(timeLimit).setMemoryLimit(memoryLimit));
+              record = toJson(index, level, result);
+            }catch(Throwable e){
+              // OutOfMemoryErrorなどで失敗した問題も、結果の行を書いて数え漏らさない
+              record = "{\"index\":" + index + ",\"title\":" + quote(level.getTitle()) + ",\"status\":\"Error\",\"message\":" + quote(String.valueOf(e)) + "}";
+            }
+            synchronized(out){
+              try{
+                out.write(record);
+                out.write('\n');
+                out.flush();
+              }catch(IOException e){
+                e.printStackTrace();
+              }
+            }
+          }
+        });
+      }
+    }finally{
+      pool.shutdown();
+    }
+    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * ファイルやディレクトリから問題を読み込みます（map.LevelReader）。<br>
+   * ディレクトリの場合は、含まれる全てのファイルを名前順に読み込みます。
+   * 読み込めない問題は標準エラー出力に警告を出して読み飛ばします
+   * @param path ファイルまたはディレクトリ
+   * @return 読み込んだ問題の一覧
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static public List<Level> load(File path) throws IOException{
+    ArrayList<Level> levels = new ArrayList<Level>();
+    if(path.isDirectory()){
+      File files[] = path.listFiles();
+      Arrays.sort(files);
+      for(File file : files){
+        if(file.isFile()) loadCollection(file, levels);
+      }
+    }else{
+      loadCollection(path, levels);
+    }
+    return levels;
+  }
+
+  /**
+   * 1つのファイルに含まれる問題を読み込みます
+   * @param file 読み込むファイル
+   * @param levels 読み込んだ問題を追加する一覧
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static private void loadCollection(File file, List<Level> levels) throws IOException{
+    LevelReader reader = LevelReader.open(file);
+    while(true){
+      try{
+        Level level = reader.next();
+        if(level == null) break;
+        levels.add(level);
+      }catch(IllegalArgumentException e){
+        System.err.println(file.getName() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * 問題の重さの目安（荷物の数とマスの数の積）を求めます
+   * @param level 問題
+   * @return 重さの目安
+   */
+  static private long weightOf(Level level){
+    MapState state = level.getState();
+    return (long)state.getLoadsCount() * state.getMap().getCellCount();
+  }
+
+  /**
+   * 探索の結果を1行のJSONにします
+   * @param index 問題の番号
+   * @param level 問題
+   * @param result 探索の結果
+   * @return JSON文字列
+   */
+  static private String toJson(int index, Level level, SolveResult result){
+    StringBuilder builder = new StringBuilder();
+    builder.append("{\"index\":").append(index);
+    builder.append(",\"title\":").append(quote(level.getTitle()));
+    builder.append(",\"status\":").append(quote(result.getStatus().name()));
+    if(result.isSolved()){
+      builder.append(",\"pushes\":").append(result.getPushCount());
+      builder.append(",\"moves\":").append(result.getMoveCount());
+      builder.append(",\"solution\":").append(quote(result.getSolution()));
+    }
+    builder.append(",\"expanded\":").append(result.getExpanded());
+    builder.append(",\"time\":").append(result.getElapsedTime() / 1000.0);
+    builder.append('}');
+    return builder.toString();
+  }
+
+  /**
+   * 文字列をJSONの文字列リテラルにします
+   * @param str 文字列
+   * @return 引用符で囲み、エスケープした文字列
+   */
+  static private String quote(String str){
+    StringBuilder builder = new StringBuilder(str.length() + 2);
+    builder.append('"');
+    for(int i=0;i<str.length();++i){
+      char c = str.charAt(i);
+      if(c == '"' || c == '\\'){
+        builder.append('\\').append(c);
+      }else if(c < 0x20){
+        builder.append(String.format("\\u%04x", (int)c));
+      }else{
+        builder.append(c);
+      }
+    }
+    builder.append('"');
+    return builder.toString();
+  }
+
+  /**
+   * 問題をまとめて解き、結果を標準出力に出力します
+   * @param args 1つ目に問題集のファイルかディレクトリ（省略時はsrc/problems）、
+   * 2つ目に探索エンジンの名前（省略時はastar）、3つ目に同時に解く問題の数（省略時はプロセッサの数）、
+   * 4つ目に問題ごとの探索時間の上限（ミリ秒、省略時は60000）、5つ目に解のキャッシュのファイル（省略時は使わない）を指定します
+   */
+  public static void main(String[] args){
+    File path = new File(args.length > 0 ? args[0] : "src/problems");
+    String engine = args.length > 1 ? args[1] : "astar";
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    long timeLimit = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_TIME_LIMIT;
+    try{
+      Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+      BatchSolver solver = new BatchSolver(engine, threads, timeLimit);
+      SolutionCache cache = args.length > 4 ? new SolutionCache(new File(args[4])) : null;
+      solver.setCache(cache).solve(load(path), out);
+      if(cache != null) cache.close();
+      out.flush();
+    }catch(IOException e){
+      e.printStackTrace();
+      System.exit(1);
+    }catch(InterruptedException e){
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+}
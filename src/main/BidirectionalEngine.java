@@ -0,0 +1,216 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import map.Map;
+import map.MapState;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+import heuristic.Heuristic;
+import heuristic.IncrementalHeuristic;
+
+/**
+ * 初期状態からの前向きの探索と、ゴールからの後ろ向きの探索を同時に行うエンジンです。<br>
+ * 前向きはA*で荷物を押し、後ろ向きは全ての荷物がゴールに乗った状態（キャラクターのいる領域ごとに1つ）から幅優先で荷物を引きます。
+ * 両方向で生成した状態はハッシュ値からNodeStoreでの番号と手数を引けるようにしておき、片方で生成した状態がもう片方で見つかった時点で経路がつながります。<br>
+ * つながった経路の長さが両方向の未展開ノードから求めた下限以下になるまで探索を続けるので、押す回数が最小の解が得られます
+ * @author giginet
+ *
+ */
+public class BidirectionalEngine implements SearchEngine{
+  private DeadlockDetector detector = null;
+
+  private ArrayDeque<Node> backward = null;
+  private TranspositionTable backwardDepths = null;
+  private TranspositionTable backwardIds = null;
+  private NodeStore backwardStore = null;
+  private int bestBackward = NodeStore.ROOT;
+  private int bestForward = NodeStore.ROOT;
+  private int bestLength = Integer.MAX_VALUE;
+  private OpenList forward = null;
+  private TranspositionTable forwardDepths = null;
+  private TranspositionTable forwardIds = null;
+  private NodeStore forwardStore = null;
+  private PushGenerator generator = null;
+  private IncrementalHeuristic heuristic = null;
+  private MetricsCounter counter = null;
+  private int[] pushes = null;
+
+  /**
+   * コンストラクタ
+   * @param detector 前向きの探索で荷物を押すたびに実行するデッドロック判定
+   */
+  public BidirectionalEngine(DeadlockDetector detector){
+    this.detector = detector;
+  }
+
+  public List<Integer> search(MapState startState, SearchBudget budget){
+    Map map = startState.getMap();
+    generator = new PushGenerator(map);
+    // 後ろ向きは1回ずつ引くので、前向きも1回ずつ押して手数をそろえる
+    generator.setMacros(false, false);
+    heuristic = new AssignmentHeuristic(map);
+    counter = new MetricsCounter(budget);
+    forward = new OpenList();
+    forwardDepths = new TranspositionTable();
+    forwardIds = new TranspositionTable();
+    forwardStore = new NodeStore();
+    backward = new ArrayDeque<Node>();
+    backwardDepths = new TranspositionTable();
+    backwardIds = new TranspositionTable();
+    backwardStore = new NodeStore();
+    pushes = new int[startState.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length];
+    bestForward = NodeStore.ROOT;
+    bestBackward = NodeStore.ROOT;
+    bestLength = Integer.MAX_VALUE;
+    MapState initialState = generator.normalize(startState);
+    int initialEstimate = heuristic.estimate(initialState);
+    if(initialEstimate == Heuristic.INFINITY) return null;
+    addForward(new Node(initialState, initialEstimate));
+    // 全ての荷物がゴールに乗った状態を、キャラクターのいる領域ごとに後ろ向きの初期状態にする
+    for(int cell=0;cell<map.getCellCount();++cell){
+      if(!map.canThrough(cell) || map.isGoal(cell)) continue;
+      MapState goal = generator.normalize(new MapState(map, cell, map.getGoalBits().clone()));
+      if(backwardIds.contains(goal.getHash())) continue;
+      addBackward(new Node(goal, 0));
+    }
+    while(!forward.isEmpty()){
+      // 見つかった経路より短い経路が残っていなければ終了する
+      int bound = forward.peekCost();
+      if(!backward.isEmpty()) bound = Math.max(bound, backward.peek().getDepth());
+      if(bestLength <= bound) break;
+      if(!budget.consume()) return null;
+      // 未展開ノードの少ない方向を展開する
+      if(!backward.isEmpty() && backward.size() < forward.size()){
+        expandBackward(backward.poll());
+      }else{
+        expandForward(forward.poll());
+      }
+    }
+    if(bestLength == Integer.MAX_VALUE) return null;
+    // 前向きの経路と後ろ向きの経路をつなげて押し方の列を求める。後ろ向きの経路はゴール側から順に並んでいる
+    ArrayList<Integer> path = forwardStore.path(bestForward);
+    ArrayList<Integer> rest = backwardStore.path(bestBackward);
+    Collections.reverse(rest);
+    path.addAll(rest);
+    return path;
+  }
+
+  /**
+   * 前向きのノードを1つ展開します
+   * @param current 展開するノード
+   */
+  private void expandForward(Node current){
+    MapState map = current.getCurrent();
+    // より少ない手数で同じ状態に到達済みのノードは展開しない
+    if(current.getDepth() > forwardDepths.get(map.getHash())) return;
+    int id = forwardIds.get(map.getHash());
+    int chara = map.getCharaIndex();
+    int depth = current.getDepth() + 1;
+    long time = counter.now();
+    heuristic.prepare(map);
+    counter.estimated(time);
+    time = counter.now();
+    int count = generator.generate(map, pushes);
+    counter.generated(count, time);
+    for(int i = 0; i < count; ++i){
+      int to = generator.destinationOf(pushes[i]);
+      // 展開中の状態をその場で書き換えて調べ、登録する子状態だけをコピーする
+      generator.make(map, pushes[i]);
+      Node node = null;
+      int old = forwardDepths.get(map.getHash());
+      if(old != -1 && old <= depth){
+        counter.duplicate();
+      }else if(detector.isDeadlocked(map, to)){
+        // もう解けない状態は展開しない
+        counter.deadlock();
+      }else{
+        time = counter.now();
+        int estimate = heuristic.estimateChild(map, PushGenerator.loadOf(pushes[i]), to);
+        counter.estimated(time);
+        if(estimate != Heuristic.INFINITY) node = new Node(map.deepClone(), id, depth, pushes[i], estimate);
+      }
+      generator.unmake(map, pushes[i], chara);
+      if(node != null) addForward(node);
+    }
+    counter.expanded(current.getCost(), current.getEstimate());
+    counter.resize(forward.size() + backward.size(), forwardDepths.size() + backwardDepths.size());
+    counter.flush();
+  }
+
+  /**
+   * 後ろ向きのノードを1つ展開します
+   * @param current 展開するノード
+   */
+  private void expandBackward(Node current){
+    MapState map = current.getCurrent();
+    int id = backwardIds.get(map.getHash());
+    int chara = map.getCharaIndex();
+    long time = counter.now();
+    int count = generator.generatePulls(map, pushes);
+    counter.generated(count, time);
+    for(int i = 0; i < count; ++i){
+      generator.makePull(map, pushes[i]);
+      Node node = null;
+      if(backwardIds.contains(map.getHash())){
+        counter.duplicate();
+      }else{
+        node = new Node(map.deepClone(), id, current.getDepth() + 1, pushes[i], 0);
+      }
+      generator.unmakePull(map, pushes[i], chara);
+      if(node != null) addBackward(node);
+    }
+    counter.resize(forward.size() + backward.size(), forwardDepths.size() + backwardDepths.size());
+    counter.flush();
+  }
+
+  /**
+   * 前向きのノードを登録し、後ろ向きの探索で生成した状態であれば経路を記録します
+   * @param node 登録するノード
+   */
+  private void addForward(Node node){
+    long hash = node.getCurrent().getHash();
+    int id = forwardStore.add(node.getParent(), node.getPush());
+    forwardDepths.offer(hash, node.getDepth());
+    forwardIds.put(hash, id);
+    forward.add(node);
+    int other = backwardIds.get(hash);
+    if(other != -1) meet(id, node.getDepth(), other, backwardDepths.get(hash));
+  }
+
+  /**
+   * 後ろ向きのノードを登録し、前向きの探索で生成した状態であれば経路を記録します
+   * @param node 登録するノード
+   */
+  private void addBackward(Node node){
+    long hash = node.getCurrent().getHash();
+    int id = backwardStore.add(node.getParent(), node.getPush());
+    backwardDepths.offer(hash, node.getDepth());
+    backwardIds.put(hash, id);
+    backward.add(node);
+    int other = forwardIds.get(hash);
+    if(other != -1) meet(other, forwardDepths.get(hash), id, node.getDepth());
+  }
+
+  /**
+   * 前向きと後ろ向きの経路がつながったとき、これまでより短い場合に記録します
+   * @param forwardId 前向きのノードの番号
+   * @param forwardDepth 前向きのノードの手数
+   * @param backwardId 後ろ向きのノードの番号
+   * @param backwardDepth 後ろ向きのノードの手数
+   */
+  private void meet(int forwardId, int forwardDepth, int backwardId, int backwardDepth){
+    int length = forwardDepth + backwardDepth;
+    if(length < bestLength){
+      bestLength = length;
+      bestForward = forwardId;
+      bestBackward = backwardId;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * 
+ */
+package main;
+
+/**
+ * 大きさが固定された置換表です。IDA*のように、全ての状態を保持しきれない探索で使います。<br>
+ * 2つのスロットを1組にした組連想の表で、組が埋まっているときは初期状態から遠い（手数の大きい）方の項目を置き換えます。
+ * 各項目は、その状態に到達した最小の手数と反復の番号、探索でわかったゴールまでの見積もりを保持します
+ * @author giginet
+ *
+ */
+public class BoundedTranspositionTable{
+  /** 空きスロットを表すキーです。ハッシュ値が0の状態は別の値に置き換えて格納します */
+  static private final long EMPTY = 0L;
+  /** ハッシュ値0の代わりに格納する値です */
+  static private final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private int[] depths = null;
+  private int[] estimates = null;
+  private int[] iterations = null;
+  private long[] keys = null;
+  private int mask = 0;
+  private int size = 0;
+
+  /**
+   * コンストラクタ。格納できる項目の数を指定して空の置換表を生成します
+   * @param capacity 格納できる項目の数。2の冪に切り上げられます
+   */
+  public BoundedTranspositionTable(int capacity){
+    int length = 2;
+    while(length < capacity) length <<= 1;
+    keys = new long[length];
+    depths = new int[length];
+    estimates = new int[length];
+    iterations = new int[length];
+    mask = (length - 1) & ~1;
+  }
+
+  /**
+   * ある状態の項目を探します
+   * @param hash 状態のハッシュ値
+   * @return 項目のスロット番号。見つからない場合は-1
+   */
+  public int find(long hash){
+    long key = hash == EMPTY ? ZERO_KEY : hash;
+    int i = slot(key);
+    if(keys[i] == key) return i;
+    if(keys[i + 1] == key) return i + 1;
+    return -1;
+  }
+
+  /**
+   * ある状態の項目を格納します。すでに項目がある場合は上書きします
+   * @param hash 状態のハッシュ値
+   * @param depth 初期状態からの手数
+   * @param estimate ゴールまでの見積もり
+   * @param iteration 反復の番号
+   */
+  public void store(long hash, int depth, int estimate, int iteration){
+    long key = hash == EMPTY ? ZERO_KEY : hash;
+    int i = slot(key);
+    if(keys[i] != key && keys[i] != EMPTY){
+      // 同じ状態か空きスロットがあればそこへ、なければ手数の大きい方を置き換える
+      if(keys[i + 1] == key || keys[i + 1] == EMPTY || depths[i + 1] > depths[i]) ++i;
+    }
+    if(keys[i] == EMPTY) ++size;
+    keys[i] = key;
+    depths[i] = depth;
+    estimates[i] = estimate;
+    iterations[i] = iteration;
+  }
+
+  /**
+   * スロットに格納された手数を返します
+   * @param slot find で得たスロット番号
+   * @return 手数
+   */
+  public int getDepth(int slot){
+    return depths[slot];
+  }
+
+  /**
+   * スロットに格納された見積もりを返します
+   * @param slot find で得たスロット番号
+   * @return 見積もり
+   */
+  public int getEstimate(int slot){
+    return estimates[slot];
+  }
+
+  /**
+   * スロットに格納された反復の番号を返します
+   * @param slot find で得たスロット番号
+   * @return 反復の番号
+   */
+  public int getIteration(int slot){
+    return iterations[slot];
+  }
+
+  /**
+   * 格納されている項目の数を返します
+   * @return 項目の数
+   */
+  public int size(){
+    return size;
+  }
+
+  /**
+   * キーから組の最初のスロットを求めます
+   * @param key キー
+   * @return スロット番号
+   */
+  private int slot(long key){
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int)(h >>> 32) & mask;
+  }
+}
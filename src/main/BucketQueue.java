@@ -0,0 +1,129 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.Arrays;
+
+/**
+ * ノードの番号をコストごとのバケットで管理する優先度付きキューです。<br>
+ * コスト（手数と見積もりの和）が小さいノードを優先し、同じコストの場合は見積もりの小さい（手数が多く、ゴールに近い）ノードを優先します。
+ * コストと見積もりは小さな整数なので、組ごとにバケットを用意し、最小のコストと見積もりの位置を覚えておくことで、
+ * 比較をせずに追加と取り出しができます。同じバケットの中では後から追加したノードを先に取り出します。<br>
+ * ノードは番号（int）だけで扱うので、追加や取り出しでオブジェクトを生成しません
+ * @author giginet
+ *
+ */
+public class BucketQueue{
+  /** バケットの初期容量です */
+  static private final int BUCKET_CAPACITY = 16;
+
+  private int[][] buckets = null;
+  private int[] counts = null;
+  private int[] lowest = null;
+  private int minCost = 0;
+  private int size = 0;
+  private int[] sizes = null;
+
+  /**
+   * コンストラクタ。空のキューを生成します
+   */
+  public BucketQueue(){
+    allocate(64);
+  }
+
+  /**
+   * ノードを追加します
+   * @param id ノードの番号
+   * @param cost ノードのコスト
+   * @param estimate ノードの見積もり。0以上、コスト以下である必要があります
+   * @throws IllegalArgumentException 見積もりが範囲外のとき
+   */
+  public void add(int id, int cost, int estimate) throws IllegalArgumentException{
+    if(estimate < 0 || estimate > cost) throw new IllegalArgumentException("見積もりは0以上、コスト以下である必要があります");
+    if(cost >= counts.length) allocate(Math.max(cost + 1, counts.length * 2));
+    int b = bucketOf(cost, estimate);
+    int[] bucket = buckets[b];
+    if(bucket == null){
+      bucket = new int[BUCKET_CAPACITY];
+      buckets[b] = bucket;
+    }else if(sizes[b] == bucket.length){
+      bucket = Arrays.copyOf(bucket, bucket.length * 2);
+      buckets[b] = bucket;
+    }
+    bucket[sizes[b]++] = id;
+    if(counts[cost] == 0 || estimate < lowest[cost]) lowest[cost] = estimate;
+    ++counts[cost];
+    if(size == 0 || cost < minCost) minCost = cost;
+    ++size;
+  }
+
+  /**
+   * 最も優先度の高いノードを取り出します
+   * @return ノードの番号。キューが空の場合は-1
+   */
+  public int poll(){
+    if(size == 0) return -1;
+    int cost = peekCost();
+    int b = bucketOf(cost, lowest[cost]);
+    --counts[cost];
+    --size;
+    return buckets[b][--sizes[b]];
+  }
+
+  /**
+   * 最も優先度の高いノードのコストを返します
+   * @return コスト。キューが空の場合は-1
+   */
+  public int peekCost(){
+    if(size == 0) return -1;
+    while(counts[minCost] == 0) ++minCost;
+    while(sizes[bucketOf(minCost, lowest[minCost])] == 0) ++lowest[minCost];
+    return minCost;
+  }
+
+  /**
+   * キューに入っているノードの数を返します
+   * @return ノードの数
+   */
+  public int size(){
+    return size;
+  }
+
+  /**
+   * キューが空かどうかを返します
+   * @return 空かどうか
+   */
+  public boolean isEmpty(){
+    return size == 0;
+  }
+
+  /**
+   * コストと見積もりの組からバケットの番号を求めます。見積もりはコスト以下なので、三角形に詰めて並べます
+   * @param cost コスト
+   * @param estimate 見積もり
+   * @return バケットの番号
+   */
+  static private int bucketOf(int cost, int estimate){
+    return cost * (cost + 1) / 2 + estimate;
+  }
+
+  /**
+   * 指定したコストの上限まで扱えるように配列を確保し直します
+   * @param length 扱うコストの上限+1
+   */
+  private void allocate(int length){
+    int bucketCount = bucketOf(length, 0);
+    if(counts == null){
+      counts = new int[length];
+      lowest = new int[length];
+      buckets = new int[bucketCount][];
+      sizes = new int[bucketCount];
+      return;
+    }
+    counts = Arrays.copyOf(counts, length);
+    lowest = Arrays.copyOf(lowest, length);
+    buckets = Arrays.copyOf(buckets, bucketCount);
+    sizes = Arrays.copyOf(sizes, bucketCount);
+  }
+}
@@ -0,0 +1,339 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import map.Map;
+import map.MapState;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+import heuristic.Heuristic;
+import heuristic.IncrementalHeuristic;
+
+/**
+ * 外部記憶を使って幅優先で探索するエンジンです。<br>
+ * 状態は荷物の位置のビット列とキャラクターの位置をそのまま詰めたレコード（RecordFile）で表し、
+ * 押す回数ごとの層と探索済みの状態の集合を、それぞれ整列したファイルとしてディスクに保存します。<br>
+ * 1つの層を展開して得た子状態は、決まった数ずつメモリ上で整列して書き出し、層の展開が終わってから
+ * 探索済みの状態のファイルとまとめてマージすることで、重複をまとめて取り除きます。
+ * ハッシュ値ではなく状態そのものを比べるので衝突はなく、幅優先なので押す回数が最小の解が得られます。
+ * メモリはバッファの分しか使わないので、A*では置換表が収まらない問題も、ディスクの容量の範囲で探索できます
+ * @author giginet
+ *
+ */
+public class ExternalEngine implements SearchEngine{
+  /** メモリ上で整列する子状態の数のデフォルト値です */
+  static public final int DEFAULT_BUFFER_RECORDS = 1 << 18;
+
+  private int bufferRecords = 0;
+  private DeadlockDetector detector = null;
+  private File directory = null;
+
+  private long[] buffer = null;
+  private int buffered = 0;
+  private MetricsCounter counter = null;
+  private ArrayList<RecordFile> files = null;
+  private int length = 0;
+  private ArrayList<RecordFile> runs = null;
+  private File workspace = null;
+
+  /**
+   * コンストラクタ。一時ファイルはjava.io.tmpdirに作ります
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   */
+  public ExternalEngine(DeadlockDetector detector){
+    this(detector, new File(System.getProperty("java.io.tmpdir")), DEFAULT_BUFFER_RECORDS);
+  }
+
+  /**
+   * コンストラクタ
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   * @param directory 一時ファイルを作るディレクトリ。探索ごとにこの中にディレクトリを作り、探索が終わったら削除します
+   * @param bufferRecords メモリ上で整列する子状態の数
+   */
+  public ExternalEngine(DeadlockDetector detector, File directory, int bufferRecords){
+    this.detector = detector;
+    this.directory = directory;
+    this.bufferRecords = bufferRecords;
+  }
+
+  public List<Integer> search(MapState startState, SearchBudget budget){
+    files = new ArrayList<RecordFile>();
+    try{
+      workspace = File.createTempFile("external", "", directory);
+      if(!workspace.delete() || !workspace.mkdir()) throw new IOException("一時ディレクトリ" + workspace + "を作れません");
+      return search(startState, budget, new PushGenerator(startState.getMap()), new AssignmentHeuristic(startState.getMap()));
+    }catch(IOException e){
+      throw new IllegalStateException(e);
+    }finally{
+      for(RecordFile file : files) file.delete();
+      if(workspace != null) workspace.delete();
+      files = null;
+      runs = null;
+      buffer = null;
+    }
+  }
+
+  /**
+   * 層ごとに展開と重複の除去を繰り返します
+   * @param startState 初期状態
+   * @param budget 探索の予算
+   * @param generator 押し方の生成器
+   * @param heuristic 解けない状態を除くための見積もりの計算器
+   * @return 押し方の番号の列。解が見つからなかった場合や、探索を打ち切った場合はnull
+   * @throws IOException 一時ファイルの読み書きに失敗したとき
+   */
+  private List<Integer> search(MapState startState, SearchBudget budget, PushGenerator generator, IncrementalHeuristic heuristic) throws IOException{
+    Map map = startState.getMap();
+    // 層は押す回数でそろえるので、マクロの押し方は使わない
+    generator.setMacros(false, false);
+    MapState initial = generator.normalize(startState);
+    if(heuristic.estimate(initial) == Heuristic.INFINITY) return null;
+    if(initial.isGoal()) return new ArrayList<Integer>();
+    counter = new MetricsCounter(budget);
+    length = map.wordCount() + 1;
+    buffer = new long[bufferRecords * length];
+    // 初期状態だけを持つ層と探索済みの集合から始める
+    long[] record = new long[length];
+    pack(initial, -1, record, 0);
+    ArrayList<RecordFile> layers = new ArrayList<RecordFile>();
+    layers.add(create("layer0"));
+    layers.get(0).append(record, 0);
+    layers.get(0).finish();
+    RecordFile closed = create("closed0");
+    closed.append(record, 0);
+    closed.finish();
+    int pushes[] = new int[startState.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length];
+    long[] goal = null;
+    for(int depth = 0; goal == null; ++depth){
+      RecordFile layer = layers.get(depth);
+      runs = new ArrayList<RecordFile>();
+      buffered = 0;
+      RecordFile.Cursor cursor = layer.cursor();
+      try{
+        for(long i = 0; cursor.next(); ++i){
+          if(!budget.consume()) return null;
+          MapState state = unpack(map, cursor.current());
+          expand(state, generator, heuristic, pushes);
+          counter.expanded(depth, 0);
+          counter.resize(layer.size() - i - 1, closed.size());
+          counter.flush();
+        }
+      }finally{
+        cursor.close();
+      }
+      if(buffered > 0) spill();
+      // 子状態を探索済みの集合とマージし、新しい状態だけを次の層にする
+      RecordFile next = create("layer" + (depth + 1));
+      RecordFile merged = create("closed" + (depth + 1));
+      goal = merge(closed, next, merged, map.getGoalBits());
+      next.finish();
+      merged.finish();
+      for(RecordFile run : runs) run.delete();
+      closed.delete();
+      closed = merged;
+      layers.add(next);
+      if(goal == null && next.size() == 0) return null;
+    }
+    return path(map, generator, layers, goal);
+  }
+
+  /**
+   * 1つの状態を展開し、子状態をバッファに詰めます。バッファがいっぱいになったら整列してファイルに書き出します
+   * @param state 展開する状態
+   * @param generator 押し方の生成器
+   * @param heuristic 見積もりの計算器
+   * @param pushes 押し方を格納する配列
+   * @throws IOException 書き出しに失敗したとき
+   */
+  private void expand(MapState state, PushGenerator generator, IncrementalHeuristic heuristic, int[] pushes) throws IOException{
+    int chara = state.getCharaIndex();
+    long time = counter.now();
+    heuristic.prepare(state);
+    counter.estimated(time);
+    time = counter.now();
+    int count = generator.generate(state, pushes);
+    counter.generated(count, time);
+    for(int i = 0; i < count; ++i){
+      generator.make(state, pushes[i]);
+      int to = generator.destinationOf(pushes[i]);
+      if(detector.isDeadlocked(state, to)){
+        counter.deadlock();
+      }else{
+        time = counter.now();
+        int estimate = heuristic.estimateChild(state, PushGenerator.loadOf(pushes[i]), to);
+        counter.estimated(time);
+        if(estimate != Heuristic.INFINITY){
+          pack(state, pushes[i], buffer, buffered * length);
+          if(++buffered == bufferRecords) spill();
+        }
+      }
+      generator.unmake(state, pushes[i], chara);
+    }
+  }
+
+  /**
+   * バッファの子状態を整列し、重複を除いてファイルに書き出します
+   * @throws IOException 書き出しに失敗したとき
+   */
+  private void spill() throws IOException{
+    Integer[] order = new Integer[buffered];
+    for(int i = 0; i < buffered; ++i) order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>(){
+      public int compare(Integer a, Integer b){
+        return RecordFile.compare(buffer, a * length, buffer, b * length, length);
+      }
+    });
+    RecordFile run = create("run" + runs.size());
+    for(int i = 0; i < buffered; ++i){
+      if(i > 0 && RecordFile.compare(buffer, order[i - 1] * length, buffer, order[i] * length, length) == 0){
+        counter.duplicate();
+        continue;
+      }
+      run.append(buffer, order[i] * length);
+    }
+    run.finish();
+    runs.add(run);
+    buffered = 0;
+  }
+
+  /**
+   * 整列した子状態のファイルと探索済みの集合をマージします。
+   * 探索済みの集合に含まれない子状態を次の層に、全ての状態を新しい探索済みの集合に書き出します
+   * @param closed 探索済みの集合
+   * @param next 次の層を書き出すファイル
+   * @param merged 新しい探索済みの集合を書き出すファイル
+   * @param goals ゴールのビット列
+   * @return 次の層にゴールの状態があればそのレコード。なければnull
+   * @throws IOException 読み書きに失敗したとき
+   */
+  private long[] merge(RecordFile closed, RecordFile next, RecordFile merged, long[] goals) throws IOException{
+    // 0番目を探索済みの集合、それ以降を子状態のファイルとする
+    RecordFile.Cursor[] cursors = new RecordFile.Cursor[runs.size() + 1];
+    boolean[] active = new boolean[cursors.length];
+    long[] goal = null;
+    long[] record = new long[length];
+    try{
+      cursors[0] = closed.cursor();
+      for(int i = 1; i < cursors.length; ++i) cursors[i] = runs.get(i - 1).cursor();
+      for(int i = 0; i < cursors.length; ++i) active[i] = cursors[i].next();
+      while(true){
+        int min = -1;
+        for(int i = 0; i < cursors.length; ++i){
+          if(active[i] && (min < 0 || RecordFile.compare(cursors[i].current(), 0, cursors[min].current(), 0, length) < 0)) min = i;
+        }
+        if(min < 0) break;
+        System.arraycopy(cursors[min].current(), 0, record, 0, length);
+        // 同じ状態を持つファイルを全て進める。探索済みなら子状態は捨てる
+        boolean visited = min == 0;
+        for(int i = min + 1; i < cursors.length; ++i){
+          if(active[i] && RecordFile.compare(cursors[i].current(), 0, record, 0, length) == 0){
+            counter.duplicate();
+            active[i] = cursors[i].next();
+          }
+        }
+        active[min] = cursors[min].next();
+        merged.append(record, 0);
+        if(visited) continue;
+        next.append(record, 0);
+        if(goal == null && isGoal(record, goals)) goal = record.clone();
+      }
+    }finally{
+      for(RecordFile.Cursor cursor : cursors){
+        if(cursor != null) cursor.close();
+      }
+    }
+    return goal;
+  }
+
+  /**
+   * ゴールの状態から、引き方で親の状態を求めて前の層を探すことを繰り返し、押し方の列を求めます
+   * @param map マップ
+   * @param generator 押し方の生成器
+   * @param layers 押す回数ごとの層
+   * @param goal ゴールの状態のレコード
+   * @return 押し方の番号の列
+   * @throws IOException 読み込みに失敗したとき
+   */
+  private List<Integer> path(Map map, PushGenerator generator, ArrayList<RecordFile> layers, long[] goal) throws IOException{
+    ArrayList<Integer> result = new ArrayList<Integer>();
+    long[] record = goal;
+    long[] key = new long[length];
+    for(int depth = layers.size() - 1; depth > 0; --depth){
+      int push = pushOf(record);
+      result.add(push);
+      MapState parent = unpack(map, record);
+      generator.makePull(parent, push);
+      pack(parent, -1, key, 0);
+      record = new long[length];
+      if(!layers.get(depth - 1).find(key, record)) throw new IllegalStateException("親の状態が見つかりません");
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  /**
+   * 一時ディレクトリにファイルを作ります。探索が終わったら削除します
+   * @param name ファイル名
+   * @return 作ったファイル
+   * @throws IOException 作れなかったとき
+   */
+  private RecordFile create(String name) throws IOException{
+    RecordFile file = new RecordFile(new File(workspace, name), length);
+    files.add(file);
+    return file;
+  }
+
+  /**
+   * 状態をレコードに詰めます。荷物の位置のビット列の後に、キャラクターの位置を上位32bit、押し方の番号を下位32bitとしたlongを置きます
+   * @param state 状態
+   * @param push この状態に到達した押し方の番号。初期状態の場合は-1
+   * @param record 格納する配列
+   * @param offset 格納する位置
+   */
+  private void pack(MapState state, int push, long[] record, int offset){
+    long[] loads = state.getLoadBits();
+    System.arraycopy(loads, 0, record, offset, loads.length);
+    record[offset + loads.length] = ((long)state.getCharaIndex() << 32) | (push & 0xffffffffL);
+  }
+
+  /**
+   * レコードから状態を生成します
+   * @param map マップ
+   * @param record レコード
+   * @return 状態
+   */
+  private MapState unpack(Map map, long[] record){
+    return new MapState(map, (int)(record[length - 1] >>> 32), Arrays.copyOf(record, length - 1));
+  }
+
+  /**
+   * レコードに記録した押し方の番号を返します
+   * @param record レコード
+   * @return 押し方の番号
+   */
+  private int pushOf(long[] record){
+    return (int)record[length - 1];
+  }
+
+  /**
+   * レコードがゴールの状態かどうかを返します
+   * @param record レコード
+   * @param goals ゴールのビット列
+   * @return 全ての荷物がゴールに乗っているかどうか
+   */
+  private boolean isGoal(long[] record, long[] goals){
+    for(int i = 0; i < goals.length; ++i){
+      if(record[i] != goals[i]) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import map.Map;
+import map.MapState;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+import heuristic.Heuristic;
+import heuristic.IncrementalHeuristic;
+import heuristic.PatternDatabase;
+import heuristic.PatternDatabaseHeuristic;
+
+/**
+ * 反復深化A*（IDA*）で探索するエンジンです。<br>
+ * 1つの状態を押し方の適用と取り消しで書き換えながら深さ優先で探索し、
+ * コストの上限を少しずつ上げながら探索を繰り返します。使うメモリは探索の深さと、大きさが固定された置換表の分だけです。<br>
+ * 置換表には、同じ反復で少ない手数で訪れた状態と、探索でわかったゴールまでの見積もりを記録し、重複した探索を省きます
+ * @author giginet
+ *
+ */
+public class IDAStarEngine implements SearchEngine{
+  /** 置換表の大きさのデフォルト値です */
+  static public final int DEFAULT_TABLE_SIZE = 1 << 20;
+  /** 解が見つかったことを表す戻り値です */
+  static private final int FOUND = -1;
+  /** 予算を使い切って探索を打ち切ったことを表す戻り値です */
+  static private final int ABORTED = -2;
+
+  private boolean additive = true;
+  private File databaseDirectory = null;
+  private DeadlockDetector detector = null;
+  private int tableSize = 0;
+
+  private int capacity = 0;
+  private ArrayList<int[]> estimates = null;
+  private PushGenerator generator = null;
+  private IncrementalHeuristic heuristic = null;
+  private int iteration = 0;
+  private int[] path = null;
+  private boolean pruned = false;
+  private ArrayList<int[]> pushes = null;
+  private BoundedTranspositionTable table = null;
+  private SearchBudget budget = null;
+  private MetricsCounter counter = null;
+
+  /**
+   * コンストラクタ。デフォルトの大きさの置換表を使います
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   */
+  public IDAStarEngine(DeadlockDetector detector){
+    this(detector, DEFAULT_TABLE_SIZE);
+  }
+
+  /**
+   * コンストラクタ
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   * @param tableSize 置換表に格納できる項目の数
+   */
+  public IDAStarEngine(DeadlockDetector detector, int tableSize){
+    this.detector = detector;
+    this.tableSize = tableSize;
+  }
+
+  /**
+   * パターンデータベース（PatternDatabase）を見積もりに使うように設定します。表は探索を始めるときに読み込み、なければ作って保存します。
+   * 表を作る時間も探索の予算に含め、作る途中で中断を要求されたり上限に達したりした場合は探索せずに打ち切ります
+   * @param directory 表を保存するディレクトリ。nullの場合はパターンデータベースを使いません
+   * @param additive 組ごとの値を足し合わせるかどうか。falseの場合は最大値をとります
+   * @return このインスタンス自身
+   */
+  public IDAStarEngine setPatternDatabase(File directory, boolean additive){
+    this.databaseDirectory = directory;
+    this.additive = additive;
+    return this;
+  }
+
+  public List<Integer> search(MapState startState, SearchBudget budget){
+    this.budget = budget;
+    counter = new MetricsCounter(budget);
+    generator = new PushGenerator(startState.getMap());
+    heuristic = createHeuristic(startState.getMap(), budget);
+    if(heuristic == null) return null;
+    table = new BoundedTranspositionTable(tableSize);
+    pushes = new ArrayList<int[]>();
+    estimates = new ArrayList<int[]>();
+    path = new int[16];
+    capacity = startState.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length;
+    MapState state = generator.normalize(startState);
+    int estimate = heuristic.estimate(state);
+    if(estimate == Heuristic.INFINITY) return null;
+    // コストの上限を、前回の反復で上限を超えたコストの最小値まで上げながら繰り返す
+    int bound = estimate;
+    for(iteration = 1;;++iteration){
+      pruned = false;
+      int result = visit(state, 0, 0, estimate, bound);
+      if(result == FOUND) break;
+      if(result == ABORTED) return null;
+      if(result == Heuristic.INFINITY) return null;
+      bound = result;
+    }
+    ArrayList<Integer> result = new ArrayList<Integer>();
+    for(int i=0;i<path.length && path[i] != -1;++i){
+      result.add(path[i]);
+    }
+    return generator.unfold(result);
+  }
+
+  /**
+   * ある状態から深さ優先で探索します
+   * @param state 現在の状態。探索中は書き換えられますが、戻るときには元に戻っています
+   * @param ply 初期状態からの押し方の数。マクロの押し方も1つと数えます
+   * @param depth 初期状態からの手数
+   * @param estimate 現在の状態からゴールまでの見積もり
+   * @param bound この反復のコストの上限
+   * @return 解が見つかった場合はFOUND、予算を使い切った場合はABORTED、そうでなければこの状態以下で上限を超えたコストの最小値
+   */
+  private int visit(MapState state, int ply, int depth, int estimate, int bound){
+    // 対称な盤面では、回転や鏡映で重なる状態も同じ項目を使う
+    long key = generator.keyOf(state);
+    int slot = table.find(key);
+    if(slot != -1){
+      // 同じ反復で、より少ない手数で訪れていれば探索済み
+      if(table.getIteration(slot) == iteration && table.getDepth(slot) <= depth){
+        counter.duplicate();
+        pruned = true;
+        return Heuristic.INFINITY;
+      }
+      estimate = Math.max(estimate, table.getEstimate(slot));
+    }
+    if(depth + estimate > bound) return depth + estimate;
+    ensureDepth(ply);
+    if(state.isGoal()){
+      path[ply] = -1;
+      return FOUND;
+    }
+    if(!budget.consume()) return ABORTED;
+    table.store(key, depth, estimate, iteration);
+    // 子の状態を全て見積もってから、見積もりの小さい順に探索する
+    int children[] = pushes.get(ply);
+    int childEstimates[] = estimates.get(ply);
+    long time = counter.now();
+    heuristic.prepare(state);
+    counter.estimated(time);
+    int chara = state.getCharaIndex();
+    time = counter.now();
+    int count = generator.generate(state, children);
+    counter.generated(count, time);
+    for(int i=0;i<count;++i){
+      int to = generator.destinationOf(children[i]);
+      generator.make(state, children[i]);
+      if(detector.isDeadlocked(state, to)){
+        counter.deadlock();
+        childEstimates[i] = Heuristic.INFINITY;
+      }else{
+        time = counter.now();
+        childEstimates[i] = heuristic.estimateChild(state, PushGenerator.loadOf(children[i]), to);
+        counter.estimated(time);
+      }
+      generator.unmake(state, children[i], chara);
+    }
+    // 深さ優先なので、未展開ノードの数の代わりに現在の深さを記録する
+    counter.expanded(depth + estimate, estimate);
+    counter.resize(depth, table.size());
+    counter.flush();
+    sort(children, childEstimates, count);
+    int min = Heuristic.INFINITY;
+    // 子孫で重複として打ち切った状態があったかどうかを、この状態の分だけ数え直す
+    boolean outer = pruned;
+    pruned = false;
+    for(int i=0;i<count && childEstimates[i] != Heuristic.INFINITY;++i){
+      generator.make(state, children[i]);
+      int result = visit(state, ply + 1, depth + generator.lengthOf(children[i]), childEstimates[i], bound);
+      generator.unmake(state, children[i], chara);
+      if(result == FOUND){
+        path[ply] = children[i];
+        return FOUND;
+      }
+      if(result == ABORTED) return ABORTED;
+      if(result < min) min = result;
+    }
+    // 子の探索でわかった見積もりを記録しておく。
+    // 重複として打ち切った子孫はminに寄与しないので、その場合のminは実際の距離を超えることがあり、記録すると許容的でなくなる
+    if(min != Heuristic.INFINITY && !pruned){
+      slot = table.find(key);
+      if(slot != -1 && table.getEstimate(slot) < min - depth){
+        table.store(key, table.getDepth(slot), min - depth, table.getIteration(slot));
+      }
+    }
+    pruned |= outer;
+    return min;
+  }
+
+  /**
+   * ある深さで使う作業用の配列を確保します
+   * @param depth 深さ
+   */
+  private void ensureDepth(int depth){
+    while(pushes.size() <= depth){
+      pushes.add(new int[capacity]);
+      estimates.add(new int[capacity]);
+    }
+    if(path.length <= depth){
+      int newPath[] = new int[path.length * 2];
+      System.arraycopy(path, 0, newPath, 0, path.length);
+      path = newPath;
+    }
+  }
+
+  /**
+   * 押し方を見積もりの小さい順に並べ替えます（挿入ソート）
+   * @param children 押し方の番号
+   * @param childEstimates 押し方ごとの見積もり
+   * @param count 押し方の数
+   */
+  static private void sort(int[] children, int[] childEstimates, int count){
+    for(int i=1;i<count;++i){
+      int push = children[i];
+      int estimate = childEstimates[i];
+      int j = i - 1;
+      for(;j >= 0 && childEstimates[j] > estimate;--j){
+        children[j + 1] = children[j];
+        childEstimates[j + 1] = childEstimates[j];
+      }
+      children[j + 1] = push;
+      childEstimates[j + 1] = estimate;
+    }
+  }
+
+  /**
+   * 見積もりの計算器を生成します。パターンデータベースの表を作る間も予算を調べます
+   * @param map 探索するマップ
+   * @param budget 探索の予算
+   * @return 見積もりの計算器。表を作る途中で予算を使い切った場合はnull
+   */
+  private IncrementalHeuristic createHeuristic(Map map, SearchBudget budget){
+    if(databaseDirectory == null) return new AssignmentHeuristic(map);
+    try{
+      PatternDatabase database = PatternDatabase.load(map, PatternDatabase.DEFAULT_SIZE, databaseDirectory, budget);
+      return database == null ? null : new PatternDatabaseHeuristic(map, database, additive);
+    }catch(IOException e){
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * 
+ */
+package main;
+
+/**
+ * 探索エンジンが1つのスレッドの中で途中経過を数えるためのクラスです。<br>
+ * 数えた値はflushでまとめてSearchMetricsに反映します。
+ * 予算にリスナーが設定されていない場合は、時間を計らず、flushでも何もしないので、探索の速度にほとんど影響しません
+ * @author giginet
+ *
+ */
+public class MetricsCounter{
+  private SearchMetrics metrics = null;
+
+  private int bestCost = -1;
+  private int bestEstimate = Integer.MAX_VALUE;
+  private long closed = 0;
+  private long deadlocks = 0;
+  private long duplicates = 0;
+  private long generated = 0;
+  private long generationTime = 0;
+  private long heuristicTime = 0;
+  private long open = 0;
+  private long reportedClosed = 0;
+  private long reportedOpen = 0;
+
+  /**
+   * コンストラクタ
+   * @param budget 探索の予算。リスナーが設定されていなければ何も数えません
+   */
+  public MetricsCounter(SearchBudget budget){
+    this.metrics = budget.getMetrics();
+  }
+
+  /**
+   * 時間を計り始めます
+   * @return 現在時刻（ナノ秒）。数えていない場合は0
+   */
+  public long now(){
+    return metrics == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * 押し方を生成したことを記録します
+   * @param count 生成した押し方の数
+   * @param since 生成を始めたときのnowの値
+   */
+  public void generated(int count, long since){
+    generated += count;
+    if(metrics != null) generationTime += System.nanoTime() - since;
+  }
+
+  /**
+   * 見積もりを計算したことを記録します
+   * @param since 計算を始めたときのnowの値
+   */
+  public void estimated(long since){
+    if(metrics != null) heuristicTime += System.nanoTime() - since;
+  }
+
+  /**
+   * 到達済みの子状態を捨てたことを記録します
+   */
+  public void duplicate(){
+    ++duplicates;
+  }
+
+  /**
+   * デッドロックの子状態を捨てたことを記録します
+   */
+  public void deadlock(){
+    ++deadlocks;
+  }
+
+  /**
+   * ノードを展開したことを記録します
+   * @param cost 展開したノードのコスト
+   * @param estimate 展開したノードの見積もり
+   */
+  public void expanded(int cost, int estimate){
+    if(cost > bestCost) bestCost = cost;
+    if(estimate < bestEstimate) bestEstimate = estimate;
+  }
+
+  /**
+   * 現在の未展開ノードと置換表の大きさを記録します
+   * @param openSize このスレッドが持つ未展開ノードの数
+   * @param closedSize このスレッドが持つ置換表に登録した状態の数
+   */
+  public void resize(long openSize, long closedSize){
+    open = openSize;
+    closed = closedSize;
+  }
+
+  /**
+   * 数えた値をSearchMetricsに反映し、0に戻します
+   */
+  public void flush(){
+    if(metrics == null) return;
+    metrics.record(generated, duplicates, deadlocks, generationTime, heuristicTime, open - reportedOpen, closed - reportedClosed, bestCost, bestEstimate);
+    generated = 0;
+    duplicates = 0;
+    deadlocks = 0;
+    generationTime = 0;
+    heuristicTime = 0;
+    reportedOpen = open;
+    reportedClosed = closed;
+  }
+}
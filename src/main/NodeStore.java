@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * 展開したノードの親子関係を、親ノードの番号と押し方の番号の組だけで保持するクラスです。<br>
+ * 状態そのものは保持しないので、1ノードあたり8バイトで済みます。
+ * 解を求めるときは、ゴールに到達したノードから親をたどって押し方の列を復元します
+ * @author giginet
+ *
+ */
+public class NodeStore{
+  /** 親を持たないことを表すノードの番号です */
+  static public final int ROOT = -1;
+
+  private int[] parents = null;
+  private int[] pushes = null;
+  private int size = 0;
+
+  /**
+   * コンストラクタ。空の表を生成します
+   */
+  public NodeStore(){
+    parents = new int[1 << 10];
+    pushes = new int[1 << 10];
+  }
+
+  /**
+   * 展開したノードを登録します
+   * @param parent 親ノードの番号。初期状態の場合はROOT
+   * @param push 親ノードから適用した押し方の番号。初期状態の場合は-1
+   * @return 登録したノードの番号
+   */
+  public int add(int parent, int push){
+    if(size == parents.length){
+      int length = parents.length * 2;
+      int newParents[] = new int[length];
+      int newPushes[] = new int[length];
+      System.arraycopy(parents, 0, newParents, 0, size);
+      System.arraycopy(pushes, 0, newPushes, 0, size);
+      parents = newParents;
+      pushes = newPushes;
+    }
+    parents[size] = parent;
+    pushes[size] = push;
+    return size++;
+  }
+
+  /**
+   * 親ノードの番号を返します
+   * @param id ノードの番号
+   * @return 親ノードの番号。初期状態の場合はROOT
+   */
+  public int getParent(int id){
+    return parents[id];
+  }
+
+  /**
+   * 親ノードから適用した押し方の番号を返します
+   * @param id ノードの番号
+   * @return 押し方の番号。初期状態の場合は-1
+   */
+  public int getPush(int id){
+    return pushes[id];
+  }
+
+  /**
+   * 登録したノードの数を返します
+   * @return ノードの数
+   */
+  public int size(){
+    return size;
+  }
+
+  /**
+   * 初期状態から登録済みのあるノードまでの押し方の列を求めます
+   * @param id ノードの番号
+   * @return 押し方の番号の列
+   */
+  public ArrayList<Integer> path(int id){
+    ArrayList<Integer> path = new ArrayList<Integer>();
+    // 親をたどってから逆順にする
+    for(;id != ROOT;id = parents[id]){
+      if(pushes[id] != -1) path.add(pushes[id]);
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * 初期状態からあるノードまでの押し方の列を求めます
+   * @param node 最後のノード。登録していないノードでも、親ノードが登録されていれば構いません
+   * @return 押し方の番号の列
+   */
+  public ArrayList<Integer> path(Node node){
+    ArrayList<Integer> path = path(node.getParent());
+    if(node.getPush() != -1) path.add(node.getPush());
+    return path;
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.Arrays;
+
+/**
+ * A*の未展開ノードを保持するリストです。<br>
+ * ノードを配列のスロットに置き、スロットの番号をBucketQueueで優先順に並べます。
+ * 取り出したノードのスロットは次に追加するノードで使い回します
+ * @author giginet
+ *
+ */
+public class OpenList{
+  private int[] free = null;
+  private int freeCount = 0;
+  private Node[] nodes = null;
+  private BucketQueue queue = null;
+  private int used = 0;
+
+  /**
+   * コンストラクタ。空のリストを生成します
+   */
+  public OpenList(){
+    nodes = new Node[1 << 10];
+    free = new int[1 << 10];
+    queue = new BucketQueue();
+  }
+
+  /**
+   * ノードを追加します
+   * @param node 追加するノード
+   */
+  public void add(Node node){
+    int slot;
+    if(freeCount > 0){
+      slot = free[--freeCount];
+    }else{
+      if(used == nodes.length){
+        nodes = Arrays.copyOf(nodes, used * 2);
+        free = Arrays.copyOf(free, used * 2);
+      }
+      slot = used++;
+    }
+    nodes[slot] = node;
+    queue.add(slot, node.getCost(), node.getEstimate());
+  }
+
+  /**
+   * コストが最も小さく、その中で見積もりが最も小さいノードを取り出します
+   * @return ノード。空の場合はnull
+   */
+  public Node poll(){
+    int slot = queue.poll();
+    if(slot == -1) return null;
+    Node node = nodes[slot];
+    nodes[slot] = null;
+    free[freeCount++] = slot;
+    return node;
+  }
+
+  /**
+   * 次に取り出すノードのコストを返します
+   * @return コスト。空の場合は-1
+   */
+  public int peekCost(){
+    return queue.peekCost();
+  }
+
+  /**
+   * 未展開ノードの数を返します
+   * @return ノードの数
+   */
+  public int size(){
+    return queue.size();
+  }
+
+  /**
+   * 空かどうかを返します
+   * @return 空かどうか
+   */
+  public boolean isEmpty(){
+    return queue.isEmpty();
+  }
+}
@@ -0,0 +1,367 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import map.MapState;
+import deadlock.DeadlockChain;
+import deadlock.DeadlockDetector;
+import heuristic.AssignmentHeuristic;
+import heuristic.Heuristic;
+import heuristic.IncrementalHeuristic;
+
+/**
+ * 状態のハッシュ値で担当を分けて、複数のスレッドでA*を行うエンジンです（Hash Distributed A*）。<br>
+ * 各ワーカーはハッシュ値が自分に割り当てられた状態だけを優先度付きキューと置換表に持ちます。
+ * 展開して得た子ノードは担当のワーカーごとにまとめ、ロックを使わないメールボックスにまとめて送ります。<br>
+ * 解が見つかっても、それより小さいコストのノードが残っている間は探索を続けるので、押す回数が最小の解が得られます。
+ * 全てのワーカーのキューとメールボックスが空になったことは、システム内に存在するノード数のカウンタで判定します
+ * @author giginet
+ *
+ */
+public class ParallelAStarEngine implements SearchEngine{
+  /** メールボックスに一度に送るノードの数です */
+  static private final int BATCH_SIZE = 64;
+  /** 送りかけのノードを全て送り出すまでに展開するノードの数です */
+  static private final int FLUSH_INTERVAL = 32;
+
+  private int threads = 0;
+
+  private volatile Throwable failure = null;
+  private volatile Node goal = null;
+  private volatile int goalCost = Integer.MAX_VALUE;
+  private Mailbox[] mailboxes = null;
+  /** ワーカーごとの展開済みのノードの表です。探索中は各ワーカーだけが書き込みます */
+  private NodeStore[] stores = null;
+  /** メールボックス、キュー、展開中のいずれかにあるノードの数です */
+  private AtomicLong pending = null;
+  private SearchBudget budget = null;
+  private volatile boolean stopped = false;
+
+  /**
+   * コンストラクタ。利用できるプロセッサの数だけワーカーを使います
+   */
+  public ParallelAStarEngine(){
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * コンストラクタ
+   * @param threads ワーカーのスレッド数
+   */
+  public ParallelAStarEngine(int threads){
+    if(threads < 1) throw new IllegalArgumentException("スレッド数は1以上である必要があります");
+    this.threads = threads;
+  }
+
+  public List<Integer> search(MapState startState, SearchBudget budget){
+    this.budget = budget;
+    PushGenerator generator = new PushGenerator(startState.getMap());
+    MapState initialState = generator.normalize(startState);
+    int initialEstimate = new AssignmentHeuristic(startState.getMap()).estimate(initialState);
+    if(initialEstimate == Heuristic.INFINITY) return null;
+    goal = null;
+    goalCost = Integer.MAX_VALUE;
+    failure = null;
+    stopped = false;
+    mailboxes = new Mailbox[threads];
+    for(int i=0;i<threads;++i){
+      mailboxes[i] = new Mailbox();
+    }
+    // 初期ノードを担当のワーカーに送る
+    Node initial = new Node(initialState, initialEstimate, generator.keyOf(initialState));
+    pending = new AtomicLong(1);
+    Batch first = new Batch();
+    first.add(initial);
+    mailboxes[ownerOf(initial.getKey())].post(first);
+    Thread workers[] = new Thread[threads];
+    stores = new NodeStore[threads];
+    for(int i=0;i<threads;++i){
+      stores[i] = new NodeStore();
+      workers[i] = new Thread(new Worker(i, startState), "ParallelAStarEngine-" + i);
+      workers[i].start();
+    }
+    for(int i=0;i<threads;++i){
+      try{
+        workers[i].join();
+      }catch(InterruptedException e){
+        failure = e;
+        Thread.currentThread().interrupt();
+      }
+    }
+    if(failure != null) throw new IllegalStateException("ワーカーが異常終了しました", failure);
+    if(goal == null || stopped) return null;
+    // 探索結果をたどり、押し方の列を求める。ノードの番号の下位はワーカーの番号になっている
+    ArrayList<Integer> path = new ArrayList<Integer>();
+    if(goal.getPush() != -1) path.add(goal.getPush());
+    for(int id = goal.getParent(); id != NodeStore.ROOT;){
+      NodeStore store = stores[id % threads];
+      int push = store.getPush(id / threads);
+      if(push != -1) path.add(push);
+      id = store.getParent(id / threads);
+    }
+    Collections.reverse(path);
+    return generator.unfold(path);
+  }
+
+  /**
+   * 状態を担当するワーカーの番号を返します
+   * @param hash 状態のハッシュ値
+   * @return ワーカーの番号
+   */
+  private int ownerOf(long hash){
+    return (int)((hash ^ (hash >>> 32)) & 0x7fffffff) % threads;
+  }
+
+  /**
+   * ゴールに到達したノードを記録します。既に記録したものより手数が少ない場合のみ更新します
+   * @param node ゴールに到達したノード
+   */
+  private synchronized void reportGoal(Node node){
+    if(node.getDepth() < goalCost){
+      goal = node;
+      goalCost = node.getDepth();
+    }
+  }
+
+  /**
+   * メールボックスで送るノードのまとまりです
+   */
+  static private class Batch{
+    private Batch next = null;
+    private Node[] nodes = new Node[BATCH_SIZE];
+    private int size = 0;
+
+    /**
+     * ノードを追加します
+     * @param node 追加するノード
+     * @return 一杯になったかどうか
+     */
+    public boolean add(Node node){
+      nodes[size++] = node;
+      return size == nodes.length;
+    }
+  }
+
+  /**
+   * 複数のワーカーから送られるBatchを受け取るメールボックスです。<br>
+   * 送られたBatchをCASで連結リストの先頭に繋ぎ、受け取る側はまとめて取り外します
+   */
+  static private class Mailbox{
+    private AtomicReference<Batch> head = new AtomicReference<Batch>();
+
+    /**
+     * Batchを送ります
+     * @param batch 送るBatch
+     */
+    public void post(Batch batch){
+      Batch current;
+      do{
+        current = head.get();
+        batch.next = current;
+      }while(!head.compareAndSet(current, batch));
+    }
+
+    /**
+     * 届いているBatchを全て取り出します
+     * @return 取り出したBatchの連結リスト。届いていない場合はnull
+     */
+    public Batch drain(){
+      if(head.get() == null) return null;
+      return head.getAndSet(null);
+    }
+  }
+
+  /**
+   * 1つのスレッドで動くワーカーです。
+   * 見積もり、デッドロック判定、押し方の生成は作業用のバッファを持つので、ワーカーごとに生成します
+   */
+  private class Worker implements Runnable{
+    private int id = 0;
+    private MapState startState = null;
+
+    private DeadlockDetector detector = null;
+    private PushGenerator generator = null;
+    private IncrementalHeuristic heuristic = null;
+    private MetricsCounter counter = null;
+    private Batch[] outboxes = null;
+    private OpenList queue = null;
+    /** pendingにまだ反映していない、このワーカーでのノード数の増減です */
+    private long delta = 0;
+    private TranspositionTable visited = null;
+
+    /**
+     * コンストラクタ
+     * @param id ワーカーの番号
+     * @param startState 初期状態
+     */
+    public Worker(int id, MapState startState){
+      this.id = id;
+      this.startState = startState;
+    }
+
+    public void run(){
+      try{
+        detector = DeadlockChain.createDefault();
+        generator = new PushGenerator(startState.getMap());
+        heuristic = new AssignmentHeuristic(startState.getMap());
+        counter = new MetricsCounter(budget);
+        outboxes = new Batch[threads];
+        queue = new OpenList();
+        visited = new TranspositionTable();
+        loop();
+      }catch(Throwable e){
+        failure = e;
+      }
+    }
+
+    /**
+     * キューとメールボックスのノードを処理し、全体のノードが無くなったら終了します
+     */
+    private void loop(){
+      int pushes[] = new int[startState.getLoadsCount() * PushGenerator.PUSH_DIRECTIONS.length];
+      int expanded = 0;
+      while(failure == null && !stopped){
+        receive();
+        Node current = queue.poll();
+        if(current == null){
+          // 仕事が無いときは送りかけのノードを全て送り出してから、終了を判定する
+          flush(expanded);
+          expanded = 0;
+          if(pending.get() == 0) return;
+          Thread.yield();
+          continue;
+        }
+        expand(current, pushes);
+        --delta;
+        if(++expanded == FLUSH_INTERVAL){
+          flush(expanded);
+          expanded = 0;
+        }
+      }
+      counter.resize(queue.size(), visited.size());
+      counter.flush();
+    }
+
+    /**
+     * 1つのノードを展開し、子ノードを担当のワーカーに送ります
+     * @param current 展開するノード
+     * @param pushes 押し方を格納する作業用の配列
+     */
+    private void expand(Node current, int[] pushes){
+      // 見つかった解より小さいコストにならないノードは展開しない
+      if(current.getCost() >= goalCost) return;
+      MapState map = current.getCurrent();
+      // より少ない手数で同じ状態に到達済みのノードは展開しない
+      if(current.getDepth() > visited.get(current.getKey())) return;
+      if(map.isGoal()){
+        reportGoal(current);
+        return;
+      }
+      // 展開したノードを自分の表に登録し、全体で一意な番号を付ける
+      int id = stores[this.id].add(current.getParent(), current.getPush()) * threads + this.id;
+      int chara = map.getCharaIndex();
+      long time = counter.now();
+      heuristic.prepare(map);
+      counter.estimated(time);
+      time = counter.now();
+      int count = generator.generate(map, pushes);
+      counter.generated(count, time);
+      for(int i = 0; i < count; ++i){
+        int to = generator.destinationOf(pushes[i]);
+        int depth = current.getDepth() + generator.lengthOf(pushes[i]);
+        // 展開中の状態をその場で書き換えて調べ、送る子状態だけをコピーする
+        generator.make(map, pushes[i]);
+        Node node = null;
+        // もう解けない状態は展開しない
+        if(detector.isDeadlocked(map, to)){
+          counter.deadlock();
+        }else{
+          time = counter.now();
+          int estimate = heuristic.estimateChild(map, PushGenerator.loadOf(pushes[i]), to);
+          counter.estimated(time);
+          if(estimate != Heuristic.INFINITY && depth + estimate < goalCost){
+            node = new Node(map.deepClone(), id, depth, pushes[i], estimate, generator.keyOf(map));
+          }
+        }
+        generator.unmake(map, pushes[i], chara);
+        if(node != null) send(node);
+      }
+      counter.expanded(current.getCost(), current.getEstimate());
+    }
+
+    /**
+     * ノードを担当のワーカーに送ります。自分の担当であれば直接受け取ります
+     * @param node 送るノード
+     */
+    private void send(Node node){
+      int owner = ownerOf(node.getKey());
+      if(owner == id){
+        ++delta;
+        accept(node);
+        return;
+      }
+      if(outboxes[owner] == null) outboxes[owner] = new Batch();
+      if(outboxes[owner].add(node)) post(owner);
+    }
+
+    /**
+     * 送りかけのBatchをメールボックスに送ります。
+     * 受け取った側が処理し終える前に数える必要があるので、送る前にpendingに加えます
+     * @param owner 送り先のワーカーの番号
+     */
+    private void post(int owner){
+      Batch batch = outboxes[owner];
+      outboxes[owner] = null;
+      pending.addAndGet(batch.size);
+      mailboxes[owner].post(batch);
+    }
+
+    /**
+     * 送りかけのBatchを全て送り、このワーカーでのノード数の増減をpendingに、展開したノード数を予算に反映します
+     * @param expanded 前回反映してから展開したノード数
+     */
+    private void flush(int expanded){
+      counter.resize(queue.size(), visited.size());
+      counter.flush();
+      if(!budget.consume(expanded)) stopped = true;
+      for(int i=0;i<threads;++i){
+        if(outboxes[i] != null) post(i);
+      }
+      if(delta != 0){
+        pending.addAndGet(delta);
+        delta = 0;
+      }
+    }
+
+    /**
+     * メールボックスに届いたノードを受け取ります
+     */
+    private void receive(){
+      for(Batch batch = mailboxes[id].drain(); batch != null; batch = batch.next){
+        for(int i=0;i<batch.size;++i){
+          accept(batch.nodes[i]);
+        }
+      }
+    }
+
+    /**
+     * 担当のノードを置換表に登録し、未調査か、より少ない手数で到達できた場合のみキューに格納します
+     * @param node 受け取ったノード
+     */
+    private void accept(Node node){
+      if(node.getCost() < goalCost && visited.offer(node.getKey(), node.getDepth())){
+        queue.add(node);
+      }else{
+        counter.duplicate();
+        --delta;
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.PrintStream;
+
+/**
+ * 探索の途中経過を1行ずつ出力するリスナーです
+ * @author giginet
+ *
+ */
+public class ProgressLogger implements SearchListener{
+  private PrintStream out = null;
+
+  /**
+   * コンストラクタ
+   * @param out 出力先
+   */
+  public ProgressLogger(PrintStream out){
+    this.out = out;
+  }
+
+  public void progress(SearchMetrics metrics){
+    out.println("[progress] " + metrics);
+  }
+
+  public void finished(SearchMetrics metrics, SolveResult result){
+    out.println("[" + result.getStatus() + "] " + metrics);
+  }
+}
@@ -0,0 +1,539 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import map.GoalRoom;
+import map.Map;
+import map.MapState;
+import util.Direction;
+
+/**
+ * 荷物を押す操作を1手とした子状態を生成するクラスです。<br>
+ * キャラクターが歩いて到達できる範囲を塗りつぶして求め、その範囲から押せる荷物の押し方だけを列挙します。
+ * 生成した状態のキャラクターは到達可能範囲の中で一番左上のマスに置かれるので、
+ * 同じ範囲内でキャラクターの位置だけが違う状態は同じ状態として扱われます。<br>
+ * 荷物をトンネル（押す方向と直交する両側が壁のマス）に押し込んだときは、トンネルを抜けるまで続けて押す操作を1つの押し方（マクロ）にまとめます。
+ * また、設定によっては、ゴール部屋（Map#getGoalRooms）の入口に荷物を押し込んだときに、決めておいたゴールまで運ぶ操作を1つの押し方にまとめます。
+ * マクロの押し方を使う探索では、押す回数にlengthOfを、解の復元にunfoldを使ってください
+ * @author giginet
+ *
+ */
+public class PushGenerator{
+  /** 荷物を押す方向です。押し方の番号の下位2bitはこの配列の添字になります */
+  static public final Direction[] PUSH_DIRECTIONS = {Direction.North, Direction.East, Direction.South, Direction.West};
+  /** 1回だけ押す押し方の番号が使うビットです */
+  static private final int UNIT_MASK = (1 << 24) - 1;
+  /** マクロの押し方の番号で、押す回数またはゴール部屋の運び方の番号を入れる位置です */
+  static private final int MACRO_SHIFT = 24;
+  /** マクロの押し方の番号で、押す回数またはゴール部屋の運び方の番号の最大値です */
+  static private final int MACRO_LIMIT = 1 << 6;
+  /** ゴール部屋の運び方を表す押し方の番号に立てるビットです */
+  static private final int ROOM_FLAG = 1 << 30;
+
+  private Map map = null;
+  private int filled = 0;
+  private long filledHash = 0;
+  private int[] mark = null;
+  private int[] queue = null;
+  private int[][] roomMacros = null;
+  private int[] roomOffsets = null;
+  private GoalRoom[] rooms = null;
+  private int stamp = 0;
+  private boolean tunnels = true;
+  private Direction[] via = null;
+
+  /**
+   * コンストラクタ。あるマップ用の生成器を作ります
+   * @param map 探索するマップ
+   */
+  public PushGenerator(Map map){
+    this.map = map;
+    this.mark = new int[map.getCellCount()];
+    this.queue = new int[map.getCellCount()];
+    this.via = new Direction[map.getCellCount()];
+  }
+
+  /**
+   * マクロの押し方を使うかどうかを設定します。デフォルトではトンネルのマクロだけを使います。<br>
+   * トンネルのマクロは押す回数が最小の解を失いませんが、ゴール部屋のマクロは部屋の中での運び方を1通りに決めてしまうので、
+   * 押す回数が最小の解が得られるとは限りません
+   * @param tunnels トンネルのマクロを使うかどうか
+   * @param goalRooms ゴール部屋のマクロを使うかどうか
+   */
+  public void setMacros(boolean tunnels, boolean goalRooms){
+    this.tunnels = tunnels;
+    if(!goalRooms){
+      rooms = null;
+      return;
+    }
+    rooms = map.getGoalRooms();
+    // 各部屋のk番目の荷物の運び方を、入口に押し込む1回と部屋の中で押す操作に展開しておく
+    roomOffsets = new int[rooms.length];
+    ArrayList<int[]> macros = new ArrayList<int[]>();
+    for(int r=0;r<rooms.length;++r){
+      GoalRoom room = rooms[r];
+      roomOffsets[r] = macros.size();
+      int d = Arrays.asList(PUSH_DIRECTIONS).indexOf(room.getDirection());
+      for(int k=0;k<room.getSlotCount();++k){
+        int[] path = room.getPath(k);
+        Direction[] moves = room.getMoves(k);
+        int[] units = new int[path.length + 1];
+        units[0] = encode(map.moveIndex(room.getEntrance(), room.getDirection().reverse()), d);
+        for(int i=0;i<path.length;++i){
+          units[i + 1] = encode(path[i], Arrays.asList(PUSH_DIRECTIONS).indexOf(moves[i]));
+        }
+        macros.add(units);
+      }
+    }
+    roomMacros = macros.toArray(new int[macros.size()][]);
+  }
+
+  /**
+   * 押し方の番号を作ります
+   * @param load 押す荷物のあるマスのインデックス
+   * @param d 押す方向の添字（PUSH_DIRECTIONSの添字）
+   * @return 押し方の番号
+   */
+  static public int encode(int load, int d){
+    return (load << 2) | d;
+  }
+
+  /**
+   * 押し方の番号から、押す荷物のマスを取り出します
+   * @param push 押し方の番号
+   * @return 押す荷物のあるマスのインデックス
+   */
+  static public int loadOf(int push){
+    return (push & UNIT_MASK) >> 2;
+  }
+
+  /**
+   * 押し方の番号から、押す方向を取り出します
+   * @param push 押し方の番号
+   * @return 押す方向
+   */
+  static public Direction directionOf(int push){
+    return PUSH_DIRECTIONS[push & 3];
+  }
+
+  /**
+   * 押し方の番号から、押された荷物の移動先のマスを求めます
+   * @param push 押し方の番号
+   * @return 荷物の移動先のマスのインデックス
+   */
+  public int destinationOf(int push){
+    int last = unitOf(push, lengthOf(push) - 1);
+    return map.moveIndex(loadOf(last), directionOf(last));
+  }
+
+  /**
+   * 押し方で荷物を押す回数を返します
+   * @param push 押し方の番号
+   * @return 押す回数。マクロでない押し方では1
+   */
+  public int lengthOf(int push){
+    if((push & ROOM_FLAG) != 0) return roomMacros[(push & ~ROOM_FLAG) >> MACRO_SHIFT].length;
+    return (push >> MACRO_SHIFT) + 1;
+  }
+
+  /**
+   * マクロの押し方を展開したときの、i回目に押す押し方の番号を返します
+   * @param push 押し方の番号
+   * @param i 何回目か（0から）
+   * @return 1回だけ押す押し方の番号
+   */
+  public int unitOf(int push, int i){
+    if((push & ROOM_FLAG) != 0) return roomMacros[(push & ~ROOM_FLAG) >> MACRO_SHIFT][i];
+    int unit = push & UNIT_MASK, load = loadOf(unit);
+    for(int j=0;j<i;++j){
+      load = map.moveIndex(load, directionOf(unit));
+    }
+    return encode(load, unit & 3);
+  }
+
+  /**
+   * マクロを含む押し方の一覧を、1回だけ押す押し方の一覧に展開します
+   * @param pushes 押し方の番号の一覧。nullの場合はnullを返します
+   * @return 1回だけ押す押し方の番号の一覧
+   */
+  public ArrayList<Integer> unfold(List<Integer> pushes){
+    if(pushes == null) return null;
+    ArrayList<Integer> result = new ArrayList<Integer>(pushes.size());
+    for(int push : pushes){
+      for(int i=0;i<lengthOf(push);++i){
+        result.add(unitOf(push, i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * ある状態から押せる全ての押し方を列挙します。荷物がデッドスクエアに入る押し方は除外します
+   * @param state 現在の状態
+   * @param pushes 押し方の番号を格納する配列。荷物の数×4以上の長さが必要です
+   * @return 列挙した押し方の数
+   */
+  public int generate(MapState state, int[] pushes){
+    fill(state);
+    int count = 0;
+    for(int load = state.nextLoad(0); load >= 0; load = state.nextLoad(load + 1)){
+      for(int i=0;i<PUSH_DIRECTIONS.length;++i){
+        int behind = map.moveIndex(load, PUSH_DIRECTIONS[(i + 2) & 3]);
+        if(behind < 0 || mark[behind] != stamp) continue;
+        // デッドスクエアへは押さない
+        int to = map.moveIndex(load, PUSH_DIRECTIONS[i]);
+        if(!state.canThrough(to) || map.isDeadSquare(to)) continue;
+        pushes[count++] = macro(state, load, i, to);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * 荷物を押した先がゴール部屋の入口かトンネルであれば、続けて押す操作をまとめたマクロの押し方の番号を作ります
+   * @param state 現在の状態
+   * @param load 押す荷物のあるマスのインデックス
+   * @param i 押す方向の添字（PUSH_DIRECTIONSの添字）
+   * @param to 荷物の移動先のマスのインデックス
+   * @return 押し方の番号
+   */
+  private int macro(MapState state, int load, int i, int to){
+    Direction d = PUSH_DIRECTIONS[i];
+    if(rooms != null){
+      for(int r=0;r<rooms.length;++r){
+        if(rooms[r].getEntrance() != to || rooms[r].getDirection() != d) continue;
+        // 部屋の荷物が決めた順番どおりに置かれていれば、次のゴールまで運ぶ
+        int k = rooms[r].countFilled(state);
+        if(k < 0 || k >= rooms[r].getSlotCount() || roomOffsets[r] + k >= MACRO_LIMIT) break;
+        return ROOM_FLAG | ((roomOffsets[r] + k) << MACRO_SHIFT) | encode(load, i);
+      }
+    }
+    int steps = 1;
+    if(tunnels){
+      // キャラクターと荷物の両方がトンネルにいる間は、荷物を退かす方法がないので続けて押す
+      int from = load, at = to;
+      while(steps < MACRO_LIMIT && map.isTunnel(from, d) && map.isTunnel(at, d) && !map.isGoal(at)){
+        int next = map.moveIndex(at, d);
+        if(!state.canThrough(next) || map.isDeadSquare(next)) break;
+        from = at;
+        at = next;
+        ++steps;
+      }
+    }
+    return ((steps - 1) << MACRO_SHIFT) | encode(load, i);
+  }
+
+  /**
+   * ある状態から引ける全ての引き方を列挙します。後ろ向きの探索で使います。<br>
+   * 引き方は、引いた後の状態に適用すると元の状態に戻る押し方の番号で表します
+   * @param state 現在の状態
+   * @param pulls 引き方を格納する配列。荷物の数×4以上の長さが必要です
+   * @return 列挙した引き方の数
+   */
+  public int generatePulls(MapState state, int[] pulls){
+    fill(state);
+    int count = 0;
+    for(int load = state.nextLoad(0); load >= 0; load = state.nextLoad(load + 1)){
+      for(int i=0;i<PUSH_DIRECTIONS.length;++i){
+        // 荷物の手前に立ち、さらに1マス下がりながら荷物を引く
+        Direction back = PUSH_DIRECTIONS[(i + 2) & 3];
+        int to = map.moveIndex(load, back);
+        if(to < 0 || mark[to] != stamp || map.isDeadSquare(to)) continue;
+        if(!state.canThrough(map.moveIndex(to, back))) continue;
+        pulls[count++] = encode(to, i);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * ある状態に引き方を適用した親状態を生成します。キャラクターは到達可能範囲の左上に正規化されます
+   * @param state 現在の状態
+   * @param pull 引き方（引いた後の状態から元に戻す押し方の番号）
+   * @return 生成された親状態
+   */
+  public MapState applyPull(MapState state, int pull){
+    MapState parent = state.deepClone();
+    makePull(parent, pull);
+    return parent;
+  }
+
+  /**
+   * ある状態に引き方を適用します。状態自身を書き換え、キャラクターは到達可能範囲の左上に正規化されます
+   * @param state 書き換える状態
+   * @param pull 引き方の番号
+   */
+  public void makePull(MapState state, int pull){
+    Direction d = directionOf(pull);
+    state.unmakePush(loadOf(pull), d, map.moveIndex(loadOf(pull), d.reverse()));
+    state.moveCharaTo(fill(state));
+  }
+
+  /**
+   * makePullで適用した引き方を取り消し、状態を元に戻します
+   * @param state 書き換える状態
+   * @param pull 引き方の番号
+   * @param chara 引き方を適用する前のキャラクターの位置のインデックス
+   */
+  public void unmakePull(MapState state, int pull, int chara){
+    state.makePush(loadOf(pull), directionOf(pull));
+    state.moveCharaTo(chara);
+  }
+
+  /**
+   * ある状態に押し方を適用した子状態を生成します。キャラクターは到達可能範囲の左上に正規化されます
+   * @param state 現在の状態
+   * @param push 押し方の番号
+   * @return 生成された子状態
+   */
+  public MapState apply(MapState state, int push){
+    MapState child = state.push(loadOf(push), directionOf(push));
+    for(int i=1;i<lengthOf(push);++i){
+      int unit = unitOf(push, i);
+      child.makePush(loadOf(unit), directionOf(unit));
+    }
+    child.moveCharaTo(fill(child));
+    return child;
+  }
+
+  /**
+   * ある状態に押し方を適用します。状態自身を書き換え、キャラクターは到達可能範囲の左上に正規化されます
+   * @param state 書き換える状態
+   * @param push 押し方の番号
+   */
+  public void make(MapState state, int push){
+    for(int i=0;i<lengthOf(push);++i){
+      int unit = unitOf(push, i);
+      state.makePush(loadOf(unit), directionOf(unit));
+    }
+    state.moveCharaTo(fill(state));
+    // 塗りつぶした範囲は正規化した後の状態の到達可能範囲でもあるので、keyOfで使い回す
+    filledHash = state.getHash();
+  }
+
+  /**
+   * makeで適用した押し方を取り消し、状態を元に戻します
+   * @param state 書き換える状態
+   * @param push 押し方の番号
+   * @param chara 押し方を適用する前のキャラクターの位置のインデックス
+   */
+  public void unmake(MapState state, int push, int chara){
+    // 後ろから1回ずつ戻す。途中のキャラクターは押す荷物の裏側に立っていたはず
+    for(int i=lengthOf(push) - 1;i>0;--i){
+      int unit = unitOf(push, i);
+      state.unmakePush(loadOf(unit), directionOf(unit), map.moveIndex(loadOf(unit), directionOf(unit).reverse()));
+    }
+    state.unmakePush(loadOf(push), directionOf(push), chara);
+  }
+
+  /**
+   * 置換表で状態を識別するキーを返します。<br>
+   * 盤面に対称性がある場合（Map#getAutomorphisms）は、状態を回転や鏡映で変換して正規化した状態のハッシュ値のうち最小のものを返すので、
+   * 互いに重なる状態は同じキーになり、置換表には1つだけ登録されます。対称性がない場合はハッシュ値そのものです
+   * @param state キャラクターの位置を正規化した状態
+   * @return キー
+   */
+  public long keyOf(MapState state){
+    int[][] automorphisms = map.getAutomorphisms();
+    long result = state.getHash();
+    if(automorphisms.length == 0) return result;
+    // 直前にmakeで生成した状態であれば、塗りつぶした範囲をそのまま使う
+    if(filledHash != result) fill(state);
+    for(int[] permutation : automorphisms){
+      int chara = Integer.MAX_VALUE;
+      for(int i=0;i<filled;++i){
+        chara = Math.min(chara, permutation[queue[i]]);
+      }
+      long hash = map.getCharaKey(chara);
+      for(int load = state.nextLoad(0); load >= 0; load = state.nextLoad(load + 1)){
+        hash ^= map.getLoadKey(permutation[load]);
+      }
+      if(hash < result) result = hash;
+    }
+    return result;
+  }
+
+  /**
+   * キャラクターの位置を到達可能範囲の左上に正規化した状態を返します
+   * @param state 元の状態
+   * @return 正規化された状態
+   */
+  public MapState normalize(MapState state){
+    MapState result = state.deepClone();
+    result.moveCharaTo(fill(result));
+    return result;
+  }
+
+  /**
+   * 初期状態から押し方を順に適用し、キャラクターの1歩ごとの状態の一覧を復元します
+   * @param start キャラクターの位置を正規化していない初期状態
+   * @param pushes 適用する押し方の番号の一覧
+   * @return 初期状態を含む、1歩ごとの状態の一覧
+   */
+  public ArrayList<MapState> replay(MapState start, List<Integer> pushes){
+    ArrayList<MapState> result = new ArrayList<MapState>();
+    MapState current = start;
+    result.add(current);
+    ArrayList<Direction> moves = moves(start, pushes);
+    for(int i=0;i<moves.size();++i){
+      current = current.moveChara(moves.get(i));
+      result.add(current);
+    }
+    return result;
+  }
+
+  /**
+   * 初期状態から押し方を順に適用し、キャラクターの1歩ごとの移動方向の列を復元します
+   * @param start キャラクターの位置を正規化していない初期状態
+   * @param pushes 適用する押し方の番号の一覧
+   * @return 1歩ごとの移動方向の列
+   */
+  public ArrayList<Direction> moves(MapState start, List<Integer> pushes){
+    String solution = solution(start, pushes);
+    ArrayList<Direction> result = new ArrayList<Direction>(solution.length());
+    for(int i=0;i<solution.length();++i){
+      result.add(fromLurd(solution.charAt(i)));
+    }
+    return result;
+  }
+
+  /**
+   * 初期状態から押し方を順に適用し、解をLURD形式の文字列で復元します。<br>
+   * 1つの状態を書き換えながら進めるので、解の長さに比例した時間で求まります
+   * @param start キャラクターの位置を正規化していない初期状態
+   * @param pushes 適用する押し方の番号の一覧。マクロの押し方は展開します
+   * @return LURD形式の解。歩くだけの移動は小文字、荷物を押す移動は大文字で表します
+   */
+  public String solution(MapState start, List<Integer> pushes){
+    StringBuilder builder = new StringBuilder();
+    MapState current = start.deepClone();
+    pushes = unfold(pushes);
+    for(int i=0;i<pushes.size();++i){
+      int push = pushes.get(i);
+      Direction d = directionOf(push);
+      int behind = map.moveIndex(loadOf(push), d.reverse());
+      // 荷物の裏側まで歩いてから押す
+      ArrayList<Direction> path = walk(current, behind);
+      for(int j=0;j<path.size();++j){
+        builder.append(toLurd(path.get(j), false));
+      }
+      builder.append(toLurd(d, true));
+      current.makePush(loadOf(push), d);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * LURD形式の解を初期状態から再生し、押し方の番号の列に変換します
+   * @param start キャラクターの位置を正規化していない初期状態
+   * @param solution LURD形式の解
+   * @return 押し方の番号の一覧
+   * @throws IllegalArgumentException 解に不正な文字や、壁や荷物に阻まれる移動が含まれるとき
+   */
+  public ArrayList<Integer> pushes(MapState start, String solution) throws IllegalArgumentException{
+    ArrayList<Integer> result = new ArrayList<Integer>();
+    MapState current = start.deepClone();
+    for(int i=0;i<solution.length();++i){
+      char c = solution.charAt(i);
+      Direction d = fromLurd(c);
+      int next = map.moveIndex(current.getCharaIndex(), d);
+      if(Character.isUpperCase(c)){
+        if(!current.hasLoad(next) || !current.canThrough(map.moveIndex(next, d))){
+          throw new IllegalArgumentException((i + 1) + "手目の荷物を押せません");
+        }
+        result.add(encode(next, Arrays.asList(PUSH_DIRECTIONS).indexOf(d)));
+        current.makePush(next, d);
+      }else{
+        if(!current.canThrough(next)) throw new IllegalArgumentException((i + 1) + "手目に移動できません");
+        current.moveCharaTo(next);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 移動方向をLURD形式の文字に変換します
+   * @param d 移動方向（上下左右のいずれか）
+   * @param push 荷物を押す移動かどうか
+   * @return LURD形式の文字
+   */
+  static public char toLurd(Direction d, boolean push){
+    char c = d == Direction.North ? 'u' : d == Direction.East ? 'r' : d == Direction.South ? 'd' : 'l';
+    return push ? Character.toUpperCase(c) : c;
+  }
+
+  /**
+   * LURD形式の文字を移動方向に変換します
+   * @param c LURD形式の文字
+   * @return 移動方向
+   * @throws IllegalArgumentException LURD形式の文字でないとき
+   */
+  static public Direction fromLurd(char c) throws IllegalArgumentException{
+    switch(Character.toLowerCase(c)){
+    case 'u':
+      return Direction.North;
+    case 'r':
+      return Direction.East;
+    case 'd':
+      return Direction.South;
+    case 'l':
+      return Direction.West;
+    }
+    throw new IllegalArgumentException("不正な文字\"" + c + "\"が含まれています");
+  }
+
+  /**
+   * キャラクターが現在位置からあるマスまで歩く最短経路を求めます
+   * @param state 現在の状態
+   * @param to 目的のマスのインデックス
+   * @return 歩く方向の一覧。到達できない場合はnull
+   */
+  public ArrayList<Direction> walk(MapState state, int to){
+    fill(state);
+    if(mark[to] != stamp) return null;
+    ArrayList<Direction> path = new ArrayList<Direction>();
+    for(int index = to; index != state.getCharaIndex(); index = map.moveIndex(index, via[index].reverse())){
+      path.add(via[index]);
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * キャラクターが到達可能なマスを幅優先で塗りつぶします
+   * @param state 現在の状態
+   * @return 到達可能なマスのうち一番小さいインデックス（一番左上のマス）
+   */
+  private int fill(MapState state){
+    if(++stamp == 0){
+      Arrays.fill(mark, 0);
+      stamp = 1;
+    }
+    int start = state.getCharaIndex();
+    int head = 0, tail = 0;
+    int min = start;
+    queue[tail++] = start;
+    mark[start] = stamp;
+    via[start] = null;
+    filledHash = state.getHash();
+    while(head < tail){
+      int index = queue[head++];
+      if(index < min) min = index;
+      for(int i=0;i<PUSH_DIRECTIONS.length;++i){
+        int next = map.moveIndex(index, PUSH_DIRECTIONS[i]);
+        if(next < 0 || mark[next] == stamp || !state.canThrough(next)) continue;
+        mark[next] = stamp;
+        via[next] = PUSH_DIRECTIONS[i];
+        queue[tail++] = next;
+      }
+    }
+    filled = tail;
+    return min;
+  }
+}
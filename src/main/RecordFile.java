@@ -0,0 +1,231 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 固定長のレコードをキーの昇順に並べて保存するファイルです。ExternalEngineが探索の層と探索済みの状態の集合を保存するのに使います。<br>
+ * 1つのレコードはlongの列で、最後のlong以外と最後のlongの上位32bitをキーとし、最後のlongの下位32bitに値を持ちます。
+ * 書き込みはappendで先頭から順に行い、finishで閉じます。読み込みはファイルをメモリにマップして行い、
+ * 2GBを超えるファイルも扱えるように、一定の大きさの区間ごとにマップし直します
+ * @author giginet
+ *
+ */
+public class RecordFile{
+  /** 一度にマップする区間の大きさ（バイト）の上限です */
+  static private final int SEGMENT_BYTES = 1 << 26;
+  /** 書き込み用のバッファの大きさ（バイト）です */
+  static private final int WRITE_BUFFER_BYTES = 1 << 16;
+
+  private File file = null;
+  private int length = 0;
+  private long size = 0;
+
+  private ByteBuffer buffer = null;
+  private FileChannel channel = null;
+  private RandomAccessFile output = null;
+
+  /**
+   * コンストラクタ。空のファイルを作り、書き込みを始めます
+   * @param file 保存するファイル
+   * @param length 1つのレコードのlongの数
+   * @throws IOException ファイルを作れないとき
+   */
+  public RecordFile(File file, int length) throws IOException{
+    this.file = file;
+    this.length = length;
+    output = new RandomAccessFile(file, "rw");
+    output.setLength(0);
+    channel = output.getChannel();
+    buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES - WRITE_BUFFER_BYTES % (length * 8));
+  }
+
+  /**
+   * 2つのレコードのキーを比べます
+   * @param a 1つ目のレコードを含む配列
+   * @param aOffset 1つ目のレコードの位置
+   * @param b 2つ目のレコードを含む配列
+   * @param bOffset 2つ目のレコードの位置
+   * @param length 1つのレコードのlongの数
+   * @return 1つ目のキーが小さければ負、等しければ0、大きければ正の値
+   */
+  static public int compare(long[] a, int aOffset, long[] b, int bOffset, int length){
+    for(int i=0;i<length - 1;++i){
+      long x = a[aOffset + i], y = b[bOffset + i];
+      if(x != y) return x < y ? -1 : 1;
+    }
+    // 最後のlongは上位32bitだけをキーとする
+    long x = a[aOffset + length - 1] >>> 32, y = b[bOffset + length - 1] >>> 32;
+    return x < y ? -1 : x == y ? 0 : 1;
+  }
+
+  /**
+   * レコードを末尾に追加します。キーの昇順に追加する必要があります
+   * @param record レコードを含む配列
+   * @param offset レコードの位置
+   * @throws IOException 書き込みに失敗したとき
+   */
+  public void append(long[] record, int offset) throws IOException{
+    if(!buffer.hasRemaining()) drain();
+    for(int i=0;i<length;++i){
+      buffer.putLong(record[offset + i]);
+    }
+    ++size;
+  }
+
+  /**
+   * 書き込みを終えてファイルを閉じます。以降はcursorとfindで読み込めます
+   * @throws IOException 書き込みに失敗したとき
+   */
+  public void finish() throws IOException{
+    drain();
+    channel.force(false);
+    output.close();
+    output = null;
+    channel = null;
+    buffer = null;
+  }
+
+  /**
+   * レコードの数を返します
+   * @return レコードの数
+   */
+  public long size(){
+    return size;
+  }
+
+  /**
+   * ファイルを削除します
+   */
+  public void delete(){
+    if(file.exists() && !file.delete()) file.deleteOnExit();
+  }
+
+  /**
+   * 先頭から順にレコードを読み込むカーソルを作ります
+   * @return カーソル
+   * @throws IOException 読み込みに失敗したとき
+   */
+  public Cursor cursor() throws IOException{
+    return new Cursor();
+  }
+
+  /**
+   * キーが等しいレコードを二分探索で探します
+   * @param key 探すキーを持つレコード（値は無視します）
+   * @param record 見つかったレコードを格納する配列
+   * @return 見つかったかどうか
+   * @throws IOException 読み込みに失敗したとき
+   */
+  public boolean find(long[] key, long[] record) throws IOException{
+    Cursor cursor = new Cursor();
+    try{
+      long low = 0, high = size - 1;
+      while(low <= high){
+        long middle = (low + high) >>> 1;
+        cursor.seek(middle);
+        int c = compare(cursor.current(), 0, key, 0, length);
+        if(c == 0){
+          System.arraycopy(cursor.current(), 0, record, 0, length);
+          return true;
+        }
+        if(c < 0){
+          low = middle + 1;
+        }else{
+          high = middle - 1;
+        }
+      }
+      return false;
+    }finally{
+      cursor.close();
+    }
+  }
+
+  /**
+   * バッファに溜めたレコードをファイルに書き込みます
+   * @throws IOException 書き込みに失敗したとき
+   */
+  private void drain() throws IOException{
+    buffer.flip();
+    while(buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * ファイルをメモリにマップしてレコードを読み込むカーソルです
+   */
+  public class Cursor{
+    private RandomAccessFile input = null;
+    private long index = -1;
+    private long[] record = null;
+    private MappedByteBuffer segment = null;
+    private long segmentEnd = 0;
+    private int segmentRecords = 0;
+    private long segmentStart = 0;
+
+    /**
+     * コンストラクタ。先頭のレコードの前に位置します
+     * @throws IOException ファイルを開けないとき
+     */
+    private Cursor() throws IOException{
+      input = new RandomAccessFile(file, "r");
+      record = new long[length];
+      segmentRecords = Math.max(1, SEGMENT_BYTES / (length * 8));
+    }
+
+    /**
+     * 次のレコードに進みます
+     * @return 次のレコードがあったかどうか
+     * @throws IOException 読み込みに失敗したとき
+     */
+    public boolean next() throws IOException{
+      if(index + 1 >= size) return false;
+      seek(index + 1);
+      return true;
+    }
+
+    /**
+     * 指定した番号のレコードに移動します
+     * @param index レコードの番号
+     * @throws IOException 読み込みに失敗したとき
+     */
+    public void seek(long index) throws IOException{
+      if(segment == null || index < segmentStart || index >= segmentEnd){
+        // レコードを含む区間をマップし直す
+        segmentStart = index - index % segmentRecords;
+        segmentEnd = Math.min(size, segmentStart + segmentRecords);
+        long bytes = (long)length * 8;
+        segment = input.getChannel().map(FileChannel.MapMode.READ_ONLY, segmentStart * bytes, (segmentEnd - segmentStart) * bytes);
+      }
+      segment.position((int)((index - segmentStart) * length * 8));
+      for(int i=0;i<length;++i){
+        record[i] = segment.getLong();
+      }
+      this.index = index;
+    }
+
+    /**
+     * 現在のレコードを返します。次に進むと書き換えられます
+     * @return 現在のレコード
+     */
+    public long[] current(){
+      return record;
+    }
+
+    /**
+     * ファイルを閉じます
+     * @throws IOException 閉じられないとき
+     */
+    public void close() throws IOException{
+      segment = null;
+      input.close();
+    }
+  }
+}
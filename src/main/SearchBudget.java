@@ -0,0 +1,210 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1回の探索で使える資源（展開するノード数、メモリ、時間）の上限と、探索の中断を管理するクラスです。<br>
+ * 探索エンジンはノードを展開するたびにconsumeを呼び、falseが返ったら探索を打ち切ります。
+ * cancelは別のスレッドから呼び出せます。<br>
+ * リスナーを設定すると途中経過（SearchMetrics）を集計し、時間を調べるときに一定の間隔でリスナーに通知します
+ * @author giginet
+ *
+ */
+public class SearchBudget{
+  /** 時間を調べる間隔（展開したノード数）です */
+  static private final long TIME_CHECK_INTERVAL = 256;
+  /** 使用メモリを調べる間隔（展開したノード数）です */
+  static private final long MEMORY_CHECK_INTERVAL = 4096;
+
+  private long memoryLimit = Long.MAX_VALUE;
+  private long nodeLimit = Long.MAX_VALUE;
+  private long timeLimit = Long.MAX_VALUE;
+
+  private volatile boolean cancelled = false;
+  private long deadline = Long.MAX_VALUE;
+  private AtomicLong expanded = new AtomicLong();
+  private long interval = 0;
+  private SearchListener listener = null;
+  private SearchMetrics metrics = null;
+  private AtomicLong nextReport = new AtomicLong();
+  private long startTime = 0;
+  private volatile SolveResult.Status stopReason = null;
+
+  /**
+   * コンストラクタ。上限を持たない予算を生成します
+   */
+  public SearchBudget(){
+  }
+
+  /**
+   * 展開するノード数の上限を設定します
+   * @param nodeLimit 展開するノード数の上限
+   * @return この予算自身
+   */
+  public SearchBudget setNodeLimit(long nodeLimit){
+    this.nodeLimit = nodeLimit;
+    return this;
+  }
+
+  /**
+   * 使用メモリの上限を設定します。JVM全体のヒープ使用量で判定します
+   * @param memoryLimit 使用メモリの上限（バイト）
+   * @return この予算自身
+   */
+  public SearchBudget setMemoryLimit(long memoryLimit){
+    this.memoryLimit = memoryLimit;
+    return this;
+  }
+
+  /**
+   * 探索時間の上限を設定します
+   * @param timeLimit 探索時間の上限（ミリ秒）
+   * @return この予算自身
+   */
+  public SearchBudget setTimeLimit(long timeLimit){
+    this.timeLimit = timeLimit;
+    return this;
+  }
+
+  /**
+   * 途中経過を受け取るリスナーを設定します。設定しない場合、探索エンジンは途中経過を集計しません
+   * @param listener リスナー
+   * @param interval 途中経過を通知する間隔（ミリ秒）
+   * @return この予算自身
+   */
+  public SearchBudget setListener(SearchListener listener, long interval){
+    this.listener = listener;
+    this.interval = interval;
+    this.metrics = listener == null ? null : new SearchMetrics(this);
+    return this;
+  }
+
+  /**
+   * 途中経過を受け取るリスナーを返します
+   * @return リスナー。設定されていない場合はnull
+   */
+  public SearchListener getListener(){
+    return listener;
+  }
+
+  /**
+   * 途中経過の集計を返します
+   * @return 集計。リスナーが設定されていない場合はnull
+   */
+  public SearchMetrics getMetrics(){
+    return metrics;
+  }
+
+  /**
+   * 探索の開始を記録します。展開したノード数を0に戻し、時間の計測を始めます
+   */
+  public void start(){
+    expanded.set(0);
+    stopReason = null;
+    startTime = System.currentTimeMillis();
+    deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : startTime + timeLimit;
+    if(metrics != null) metrics.reset();
+    nextReport.set(startTime + interval);
+  }
+
+  /**
+   * 探索の中断を要求します。探索エンジンは次にconsumeを呼んだときに探索を打ち切ります
+   */
+  public void cancel(){
+    cancelled = true;
+  }
+
+  /**
+   * ノードを1つ展開したことを記録します
+   * @return 探索を続けてよいかどうか
+   */
+  public boolean consume(){
+    return consume(1);
+  }
+
+  /**
+   * ノードをいくつか展開したことを記録します
+   * @param count 展開したノード数
+   * @return 探索を続けてよいかどうか
+   */
+  public boolean consume(int count){
+    if(stopReason != null) return false;
+    if(cancelled) return stop(SolveResult.Status.Cancelled);
+    long before = expanded.getAndAdd(count);
+    long after = before + count;
+    if(after > nodeLimit) return stop(SolveResult.Status.NodeLimit);
+    // 時間とメモリは一定の間隔でのみ調べる
+    if(after / TIME_CHECK_INTERVAL != before / TIME_CHECK_INTERVAL){
+      long now = System.currentTimeMillis();
+      if(now > deadline) return stop(SolveResult.Status.TimeLimit);
+      if(listener != null) report(now);
+    }
+    if(memoryLimit != Long.MAX_VALUE && after / MEMORY_CHECK_INTERVAL != before / MEMORY_CHECK_INTERVAL){
+      Runtime runtime = Runtime.getRuntime();
+      if(runtime.totalMemory() - runtime.freeMemory() > memoryLimit) return stop(SolveResult.Status.MemoryLimit);
+    }
+    return true;
+  }
+
+  /**
+   * ノードを展開せずに、中断の要求と時間とメモリの上限だけを調べます。
+   * パターンデータベースの作成など、ノードを展開しない長い前処理の途中で一定の間隔で呼びます
+   * @return 探索を続けてよいかどうか
+   */
+  public boolean check(){
+    if(stopReason != null) return false;
+    if(cancelled) return stop(SolveResult.Status.Cancelled);
+    if(System.currentTimeMillis() > deadline) return stop(SolveResult.Status.TimeLimit);
+    if(memoryLimit != Long.MAX_VALUE){
+      Runtime runtime = Runtime.getRuntime();
+      if(runtime.totalMemory() - runtime.freeMemory() > memoryLimit) return stop(SolveResult.Status.MemoryLimit);
+    }
+    return true;
+  }
+
+  /**
+   * 展開したノード数を返します
+   * @return 展開したノード数
+   */
+  public long getExpanded(){
+    return expanded.get();
+  }
+
+  /**
+   * 探索を開始してからの経過時間を返します
+   * @return 経過時間（ミリ秒）
+   */
+  public long getElapsedTime(){
+    return System.currentTimeMillis() - startTime;
+  }
+
+  /**
+   * 探索を打ち切った理由を返します
+   * @return 打ち切った理由。打ち切っていない場合はnull
+   */
+  public SolveResult.Status getStopReason(){
+    return stopReason;
+  }
+
+  /**
+   * 前回の通知から間隔が空いていれば、リスナーに途中経過を通知します。複数のスレッドから呼ばれても1つのスレッドだけが通知します
+   * @param now 現在時刻（ミリ秒）
+   */
+  private void report(long now){
+    long next = nextReport.get();
+    if(now >= next && nextReport.compareAndSet(next, now + interval)) listener.progress(metrics);
+  }
+
+  /**
+   * 探索を打ち切った理由を記録します
+   * @param reason 打ち切った理由
+   * @return 常にfalse
+   */
+  private boolean stop(SolveResult.Status reason){
+    if(stopReason == null) stopReason = reason;
+    return false;
+  }
+}
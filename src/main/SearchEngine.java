@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.List;
+
+import map.MapState;
+
+/**
+ * 初期状態から全ての荷物をゴールに運ぶ押し方の列を探す探索エンジンのインターフェースです
+ * @author giginet
+ *
+ */
+public interface SearchEngine{
+  /**
+   * 初期状態から探索します。ノードを展開するたびに予算を消費し、使い切ったら探索を打ち切ります
+   * @param start キャラクターの位置を正規化していない初期状態
+   * @param budget 探索の予算
+   * @return 押し方の番号（PushGenerator#encode）の列。解が見つからなかった場合や、探索を打ち切った場合はnull
+   */
+  public List<Integer> search(MapState start, SearchBudget budget);
+}
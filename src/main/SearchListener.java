@@ -0,0 +1,26 @@
+/**
+ * 
+ */
+package main;
+
+/**
+ * 探索の途中経過を受け取るリスナーのインタフェースです。<br>
+ * SearchBudget#setListenerで設定すると、探索中は一定の間隔でprogressが、探索の終了時にfinishedが呼ばれます。
+ * progressは探索を行っているスレッドから呼ばれるので、時間のかかる処理はしないでください
+ * @author giginet
+ *
+ */
+public interface SearchListener{
+  /**
+   * 探索の途中経過を受け取ります
+   * @param metrics 途中経過
+   */
+  public void progress(SearchMetrics metrics);
+
+  /**
+   * 探索の終了を受け取ります
+   * @param metrics 最終的な集計
+   * @param result 探索の結果
+   */
+  public void finished(SearchMetrics metrics, SolveResult result);
+}
@@ -0,0 +1,211 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 探索の途中経過を集計するクラスです。<br>
+ * SearchBudget#setListenerでリスナーを設定したときだけ生成され、探索エンジンはMetricsCounterで数えた値をまとめて反映します。
+ * 複数のスレッドから反映でき、どのスレッドからでも読み出せます。
+ * 展開したノード数と経過時間はSearchBudgetの値を使います
+ * @author giginet
+ *
+ */
+public class SearchMetrics{
+  private SearchBudget budget = null;
+
+  private AtomicInteger bestCost = new AtomicInteger(-1);
+  private AtomicInteger bestEstimate = new AtomicInteger(Integer.MAX_VALUE);
+  private AtomicLong closed = new AtomicLong();
+  private AtomicLong deadlocks = new AtomicLong();
+  private AtomicLong duplicates = new AtomicLong();
+  private AtomicLong generated = new AtomicLong();
+  private AtomicLong generationTime = new AtomicLong();
+  private AtomicLong heuristicTime = new AtomicLong();
+  private AtomicLong open = new AtomicLong();
+
+  /**
+   * コンストラクタ
+   * @param budget 展開したノード数と経過時間を持つ予算
+   */
+  SearchMetrics(SearchBudget budget){
+    this.budget = budget;
+  }
+
+  /**
+   * 集計を0に戻します。探索を始めるときにSearchBudget#startから呼ばれます
+   */
+  void reset(){
+    bestCost.set(-1);
+    bestEstimate.set(Integer.MAX_VALUE);
+    closed.set(0);
+    deadlocks.set(0);
+    duplicates.set(0);
+    generated.set(0);
+    generationTime.set(0);
+    heuristicTime.set(0);
+    open.set(0);
+  }
+
+  /**
+   * MetricsCounterで数えた値を反映します
+   * @param generated 生成した子状態の数
+   * @param duplicates 到達済みだったため捨てた子状態の数
+   * @param deadlocks デッドロックと判定して捨てた子状態の数
+   * @param generationTime 押し方の生成にかかった時間（ナノ秒）
+   * @param heuristicTime 見積もりの計算にかかった時間（ナノ秒）
+   * @param open 未展開ノード数の増減
+   * @param closed 置換表に登録した状態の数の増減
+   * @param cost 展開したノードのコストの最大値
+   * @param estimate 展開したノードの見積もりの最小値
+   */
+  void record(long generated, long duplicates, long deadlocks, long generationTime, long heuristicTime, long open, long closed, int cost, int estimate){
+    this.generated.addAndGet(generated);
+    this.duplicates.addAndGet(duplicates);
+    this.deadlocks.addAndGet(deadlocks);
+    this.generationTime.addAndGet(generationTime);
+    this.heuristicTime.addAndGet(heuristicTime);
+    this.open.addAndGet(open);
+    this.closed.addAndGet(closed);
+    for(int current = bestCost.get(); cost > current && !bestCost.compareAndSet(current, cost); current = bestCost.get());
+    for(int current = bestEstimate.get(); estimate < current && !bestEstimate.compareAndSet(current, estimate); current = bestEstimate.get());
+  }
+
+  /**
+   * 展開したノード数を返します
+   * @return 展開したノード数
+   */
+  public long getExpanded(){
+    return budget.getExpanded();
+  }
+
+  /**
+   * 探索を開始してからの経過時間を返します
+   * @return 経過時間（ミリ秒）
+   */
+  public long getElapsedTime(){
+    return budget.getElapsedTime();
+  }
+
+  /**
+   * 生成した子状態の数を返します。到達済みやデッドロックで捨てたものも含みます
+   * @return 生成した子状態の数
+   */
+  public long getGenerated(){
+    return generated.get();
+  }
+
+  /**
+   * 到達済みだったため捨てた子状態の数を返します
+   * @return 捨てた子状態の数
+   */
+  public long getDuplicates(){
+    return duplicates.get();
+  }
+
+  /**
+   * デッドロックと判定して捨てた子状態の数を返します
+   * @return 捨てた子状態の数
+   */
+  public long getDeadlocks(){
+    return deadlocks.get();
+  }
+
+  /**
+   * 未展開ノードの数を返します
+   * @return 未展開ノードの数
+   */
+  public long getOpenSize(){
+    return open.get();
+  }
+
+  /**
+   * 置換表に登録した状態の数を返します
+   * @return 状態の数
+   */
+  public long getClosedSize(){
+    return closed.get();
+  }
+
+  /**
+   * これまでに展開したノードのコストの最大値を返します。A*では現在展開しているコストの層になります
+   * @return コスト。まだ展開していない場合は-1
+   */
+  public int getBestCost(){
+    return bestCost.get();
+  }
+
+  /**
+   * これまでに展開したノードの見積もりの最小値を返します
+   * @return 見積もり。まだ展開していない場合はInteger.MAX_VALUE
+   */
+  public int getBestEstimate(){
+    return bestEstimate.get();
+  }
+
+  /**
+   * 押し方の生成にかかった時間の合計を返します
+   * @return 時間（ミリ秒）
+   */
+  public long getGenerationTime(){
+    return generationTime.get() / 1000000;
+  }
+
+  /**
+   * 見積もりの計算にかかった時間の合計を返します
+   * @return 時間（ミリ秒）
+   */
+  public long getHeuristicTime(){
+    return heuristicTime.get() / 1000000;
+  }
+
+  /**
+   * 1秒あたりに展開したノード数を返します
+   * @return 1秒あたりのノード数
+   */
+  public double getExpandedPerSecond(){
+    return perSecond(getExpanded());
+  }
+
+  /**
+   * 1秒あたりに生成した子状態の数を返します
+   * @return 1秒あたりの子状態の数
+   */
+  public double getGeneratedPerSecond(){
+    return perSecond(getGenerated());
+  }
+
+  /**
+   * 生成した子状態のうち、到達済みだったものの割合を返します
+   * @return 0以上1以下の割合。まだ生成していない場合は0
+   */
+  public double getDuplicateRate(){
+    long count = getGenerated();
+    return count == 0 ? 0 : (double)getDuplicates() / count;
+  }
+
+  /**
+   * 経過時間あたりの数を求めます
+   * @param count 数
+   * @return 1秒あたりの数
+   */
+  private double perSecond(long count){
+    long time = getElapsedTime();
+    return time <= 0 ? 0 : count * 1000.0 / time;
+  }
+
+  /**
+   * 集計を1行の文字列にします。ProgressLoggerが出力します
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString(){
+    return String.format("%.1fs expanded=%d (%.0f/s) generated=%d (%.0f/s) duplicates=%.1f%% deadlocks=%d open=%d closed=%d f=%d h=%d generation=%dms heuristic=%dms",
+        getElapsedTime() / 1000.0, getExpanded(), getExpandedPerSecond(), getGenerated(), getGeneratedPerSecond(),
+        getDuplicateRate() * 100, getDeadlocks(), getOpenSize(), getClosedSize(), getBestCost(),
+        getBestEstimate() == Integer.MAX_VALUE ? -1 : getBestEstimate(), getGenerationTime(), getHeuristicTime());
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * 
+ */
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import map.MapState;
+import map.Symmetry;
+
+/**
+ * 解いた問題の解をファイルに保存し、同じ問題を再び解くときに探索せずに返すキャッシュです。<br>
+ * 問題は、盤面と初期配置を8通りの回転と鏡映で変換した文字列のうち辞書順で最小のもの（正準形）で識別するので、
+ * 回転や鏡映した問題も同じ問題として扱い、解はその向きに変換して返します。<br>
+ * ファイルには1行に1つ、正準形（行の区切りは|）と正準形の向きのLURD形式の解をタブで区切って追記するだけで、書き換えはしません。
+ * 正準形のハッシュ値から行の位置を引く索引は全てメモリに持ち、読み込んだ解は最近使ったものを決まった数だけメモリに残します。
+ * 複数のスレッドから使えます
+ * @author giginet
+ *
+ */
+public class SolutionCache{
+  /** メモリに残す解の数のデフォルト値です */
+  static public final int DEFAULT_CAPACITY = 1024;
+  /** 索引で行の長さを表すビット数です */
+  static private final int LENGTH_BITS = 24;
+
+  private File file = null;
+
+  private LinkedHashMap<Long, Item> entries = null;
+  private HashMap<Long, Long> index = new HashMap<Long, Long>();
+  private RandomAccessFile store = null;
+
+  /**
+   * コンストラクタ。デフォルトの数の解をメモリに残します
+   * @param file 保存するファイル。なければ作ります
+   * @throws IOException ファイルを読み込めないとき
+   */
+  public SolutionCache(File file) throws IOException{
+    this(file, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * コンストラクタ。ファイルを読み込んで索引を作ります
+   * @param file 保存するファイル。なければ作ります
+   * @param capacity メモリに残す解の数
+   * @throws IOException ファイルを読み込めないとき
+   */
+  public SolutionCache(File file, final int capacity) throws IOException{
+    this.file = file;
+    entries = new LinkedHashMap<Long, Item>(16, 0.75f, true){
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(java.util.Map.Entry<Long, Item> eldest){
+        return size() > capacity;
+      }
+    };
+    store = new RandomAccessFile(file, "rw");
+    load();
+  }
+
+  /**
+   * 問題の解を探します
+   * @param start 問題の初期状態
+   * @return 初期状態と同じ向きのLURD形式の解。保存されていない場合はnull
+   */
+  public synchronized String get(MapState start){
+    Key key = new Key(start);
+    Item entry = lookup(key);
+    return entry == null ? null : transform(entry.solution, key.symmetry.inverse());
+  }
+
+  /**
+   * 問題の解を保存します。同じ問題の解が既にある場合は何もしません
+   * @param start 問題の初期状態
+   * @param solution 初期状態と同じ向きのLURD形式の解
+   */
+  public synchronized void put(MapState start, String solution){
+    Key key = new Key(start);
+    if(lookup(key) != null) return;
+    Item entry = new Item(key.level, transform(solution, key.symmetry));
+    try{
+      byte[] line = (entry.level.replace('\n', '|') + "\t" + entry.solution + "\n").getBytes("US-ASCII");
+      long position = store.length();
+      store.seek(position);
+      store.write(line);
+      index.put(key.fingerprint, (position << LENGTH_BITS) | line.length);
+    }catch(IOException e){
+      throw new IllegalStateException(e);
+    }
+    entries.put(key.fingerprint, entry);
+  }
+
+  /**
+   * 保存されている問題の数を返します
+   * @return 問題の数
+   */
+  public synchronized int size(){
+    return index.size();
+  }
+
+  /**
+   * ファイルを閉じます
+   * @throws IOException 閉じられないとき
+   */
+  public synchronized void close() throws IOException{
+    store.close();
+  }
+
+  /**
+   * 問題の項目を、メモリになければファイルから読み込みます
+   * @param key 問題の正準形
+   * @return 項目。保存されていない場合はnull
+   */
+  private Item lookup(Key key){
+    Item entry = entries.get(key.fingerprint);
+    if(entry == null){
+      Long position = index.get(key.fingerprint);
+      if(position == null) return null;
+      try{
+        entry = read(position);
+      }catch(IOException e){
+        throw new IllegalStateException(e);
+      }
+      if(entry == null) return null;
+      entries.put(key.fingerprint, entry);
+    }
+    // ハッシュ値が衝突した別の問題は使わない
+    return entry.level.equals(key.level) ? entry : null;
+  }
+
+  /**
+   * ファイルを先頭から読み、索引を作ります。書き込みの途中で終わった最後の行は切り捨てます
+   * @throws IOException 読み込めないとき
+   */
+  private void load() throws IOException{
+    long length = store.length();
+    long position = 0;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+    try{
+      String line;
+      while((line = reader.readLine()) != null){
+        long next = position + line.length() + 1;
+        if(next > length) break;
+        Item entry = parse(line);
+        if(entry != null) index.put(fingerprintOf(entry.level), (position << LENGTH_BITS) | (line.length() + 1));
+        position = next;
+      }
+    }finally{
+      reader.close();
+    }
+    if(position < length) store.setLength(position);
+  }
+
+  /**
+   * 索引の位置から1行を読み込みます
+   * @param position 索引に記録した位置と長さ
+   * @return 読み込んだ項目。読み込めない場合はnull
+   * @throws IOException 読み込みに失敗したとき
+   */
+  private Item read(long position) throws IOException{
+    byte[] line = new byte[(int)(position & ((1L << LENGTH_BITS) - 1))];
+    store.seek(position >>> LENGTH_BITS);
+    store.readFully(line);
+    return parse(new String(line, 0, line.length - 1, "US-ASCII"));
+  }
+
+  /**
+   * 1行を項目に変換します
+   * @param line 行
+   * @return 項目。形式が正しくない場合はnull
+   */
+  static private Item parse(String line){
+    int tab = line.indexOf('\t');
+    if(tab < 0) return null;
+    return new Item(line.substring(0, tab).replace('|', '\n'), line.substring(tab + 1));
+  }
+
+  /**
+   * LURD形式の解の各移動を変換します
+   * @param solution LURD形式の解
+   * @param symmetry 変換
+   * @return 変換した解
+   */
+  static private String transform(String solution, Symmetry symmetry){
+    StringBuilder builder = new StringBuilder(solution.length());
+    for(int i=0;i<solution.length();++i){
+      char c = solution.charAt(i);
+      builder.append(PushGenerator.toLurd(symmetry.transform(PushGenerator.fromLurd(c)), Character.isUpperCase(c)));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * 正準形の64bitのハッシュ値（FNV-1a）を求めます
+   * @param level 正準形
+   * @return ハッシュ値
+   */
+  static private long fingerprintOf(String level){
+    long hash = 0xcbf29ce484222325L;
+    for(int i=0;i<level.length();++i){
+      hash = (hash ^ level.charAt(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * ファイルの1行に対応する項目です
+   */
+  static private class Item{
+    private String level = null;
+    private String solution = null;
+
+    /**
+     * コンストラクタ
+     * @param level 正準形
+     * @param solution 正準形の向きのLURD形式の解
+     */
+    private Item(String level, String solution){
+      this.level = level;
+      this.solution = solution;
+    }
+  }
+
+  /**
+   * 問題の正準形と、元の向きから正準形への変換です
+   */
+  static private class Key{
+    private long fingerprint = 0;
+    private String level = null;
+    private Symmetry symmetry = null;
+
+    /**
+     * コンストラクタ。8通りの変換を試し、辞書順で最小の盤面を正準形とします
+     * @param start 問題の初期状態
+     */
+    private Key(MapState start){
+      String text = start.toString();
+      for(Symmetry s : Symmetry.ALL){
+        String transformed = s.transform(text);
+        if(level == null || transformed.compareTo(level) < 0){
+          level = transformed;
+          symmetry = s;
+        }
+      }
+      fingerprint = fingerprintOf(level);
+    }
+  }
+}
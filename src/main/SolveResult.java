@@ -0,0 +1,164 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import map.MapState;
+import util.Direction;
+
+/**
+ * 1回の探索の結果を保持するクラスです。<br>
+ * 探索が終わった理由と、解が見つかった場合はキャラクターの移動と荷物の押し方の列、探索の統計を持ちます
+ * @author giginet
+ *
+ */
+public class SolveResult{
+  /**
+   * 探索が終わった理由を定義するenum型です
+   */
+  public enum Status{
+    /** 解が見つかった */
+    Solved,
+    /** 解が存在しない */
+    NoSolution,
+    /** 展開するノード数の上限に達した */
+    NodeLimit,
+    /** 使用メモリの上限に達した */
+    MemoryLimit,
+    /** 探索時間の上限に達した */
+    TimeLimit,
+    /** 中断が要求された */
+    Cancelled
+  }
+
+  private long elapsedTime = 0;
+  private long expanded = 0;
+  private List<Integer> pushes = null;
+  private String solution = null;
+  private MapState start = null;
+  private Status status = null;
+
+  /**
+   * コンストラクタ
+   * @param status 探索が終わった理由
+   * @param start 初期状態
+   * @param pushes 押し方の番号の列。解が見つからなかった場合はnull
+   * @param solution LURD形式の解（PushGenerator#solution）。解が見つからなかった場合はnull
+   * @param expanded 展開したノード数
+   * @param elapsedTime 探索にかかった時間（ミリ秒）
+   */
+  public SolveResult(Status status, MapState start, List<Integer> pushes, String solution, long expanded, long elapsedTime){
+    this.status = status;
+    this.start = start;
+    this.pushes = pushes == null ? null : Collections.unmodifiableList(pushes);
+    this.solution = solution;
+    this.expanded = expanded;
+    this.elapsedTime = elapsedTime;
+  }
+
+  /**
+   * 探索が終わった理由を返します
+   * @return 探索が終わった理由
+   */
+  public Status getStatus(){
+    return status;
+  }
+
+  /**
+   * 解が見つかったかどうかを返します
+   * @return 解が見つかったかどうか
+   */
+  public boolean isSolved(){
+    return status == Status.Solved;
+  }
+
+  /**
+   * 初期状態を返します
+   * @return 初期状態
+   */
+  public MapState getStart(){
+    return start;
+  }
+
+  /**
+   * 荷物の押し方（PushGenerator#encode）の列を返します
+   * @return 押し方の番号の列。解が見つからなかった場合はnull
+   */
+  public List<Integer> getPushes(){
+    return pushes;
+  }
+
+  /**
+   * キャラクターの1歩ごとの移動方向の列を返します
+   * @return 移動方向の列。解が見つからなかった場合はnull
+   */
+  public List<Direction> getMoves(){
+    if(solution == null) return null;
+    ArrayList<Direction> moves = new ArrayList<Direction>(solution.length());
+    for(int i=0;i<solution.length();++i){
+      moves.add(PushGenerator.fromLurd(solution.charAt(i)));
+    }
+    return moves;
+  }
+
+  /**
+   * 荷物を押した回数を返します
+   * @return 押した回数。解が見つからなかった場合は-1
+   */
+  public int getPushCount(){
+    return pushes == null ? -1 : pushes.size();
+  }
+
+  /**
+   * キャラクターが歩いた歩数を返します
+   * @return 歩数。解が見つからなかった場合は-1
+   */
+  public int getMoveCount(){
+    return solution == null ? -1 : solution.length();
+  }
+
+  /**
+   * 解をLURD形式の文字列で返します。歩くだけの移動は小文字、荷物を押す移動は大文字で表します
+   * @return LURD形式の解。解が見つからなかった場合はnull
+   */
+  public String getSolution(){
+    return solution;
+  }
+
+  /**
+   * 初期状態からキャラクターの1歩ごとの状態の一覧を返します
+   * @return 初期状態を含む、1歩ごとの状態の一覧。解が見つからなかった場合はnull
+   */
+  public List<MapState> getStates(){
+    if(solution == null) return null;
+    List<Direction> moves = getMoves();
+    ArrayList<MapState> states = new ArrayList<MapState>();
+    MapState current = start;
+    states.add(current);
+    for(int i=0;i<moves.size();++i){
+      current = current.moveChara(moves.get(i));
+      states.add(current);
+    }
+    return states;
+  }
+
+  /**
+   * 展開したノード数を返します
+   * @return 展開したノード数
+   */
+  public long getExpanded(){
+    return expanded;
+  }
+
+  /**
+   * 探索にかかった時間を返します
+   * @return 探索にかかった時間（ミリ秒）
+   */
+  public long getElapsedTime(){
+    return elapsedTime;
+  }
+}
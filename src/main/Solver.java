@@ -0,0 +1,113 @@
+/**
+ * 
+ */
+package main;
+
+import java.util.List;
+
+import map.MapState;
+
+/**
+ * 倉庫番の問題を解くライブラリの窓口となるクラスです。<br>
+ * 探索エンジンを指定して生成し、solveで問題を解いて結果をSolveResultで受け取ります。
+ * 標準出力には何も出力しません。<br>
+ * SolutionCacheを渡すと、保存済みの問題は探索せずに解を返し、新しく解けた問題の解を保存します
+ * @author giginet
+ *
+ */
+public class Solver{
+  private SolutionCache cache = null;
+  private SearchEngine engine = null;
+
+  /**
+   * コンストラクタ
+   * @param engine 探索エンジン
+   */
+  public Solver(SearchEngine engine){
+    this(engine, null);
+  }
+
+  /**
+   * コンストラクタ
+   * @param engine 探索エンジン
+   * @param cache 解のキャッシュ。nullの場合は使いません
+   */
+  public Solver(SearchEngine engine, SolutionCache cache){
+    this.engine = engine;
+    this.cache = cache;
+  }
+
+  /**
+   * 問題を表す文字列を読み込み、上限なしで解きます
+   * @param problem 問題を表す文字列
+   * @return 探索の結果
+   * @throws IllegalArgumentException 問題の形式が正しくないとき
+   */
+  public SolveResult solve(String problem) throws IllegalArgumentException{
+    return solve(MapState.parse(problem), new SearchBudget());
+  }
+
+  /**
+   * 問題を表す文字列を読み込み、予算の範囲で解きます
+   * @param problem 問題を表す文字列
+   * @param budget 探索の予算
+   * @return 探索の結果
+   * @throws IllegalArgumentException 問題の形式が正しくないとき
+   */
+  public SolveResult solve(String problem, SearchBudget budget) throws IllegalArgumentException{
+    return solve(MapState.parse(problem), budget);
+  }
+
+  /**
+   * 初期状態から予算の範囲で解きます
+   * @param start 初期状態
+   * @param budget 探索の予算
+   * @return 探索の結果
+   */
+  public SolveResult solve(MapState start, SearchBudget budget){
+    budget.start();
+    PushGenerator generator = new PushGenerator(start.getMap());
+    String cached = cache == null ? null : cache.get(start);
+    List<Integer> pushes = cached == null ? null : verify(start, generator, cached);
+    if(pushes == null){
+      cached = null;
+      pushes = engine.search(start, budget);
+    }
+    long elapsedTime = budget.getElapsedTime();
+    SolveResult result;
+    if(pushes == null){
+      SolveResult.Status status = budget.getStopReason();
+      if(status == null) status = SolveResult.Status.NoSolution;
+      result = new SolveResult(status, start, null, null, budget.getExpanded(), elapsedTime);
+    }else if(cached != null){
+      result = new SolveResult(SolveResult.Status.Solved, start, pushes, cached, budget.getExpanded(), elapsedTime);
+    }else{
+      // 押し方の列からキャラクターの1歩ごとの移動を復元する
+      String solution = generator.solution(start, pushes);
+      if(cache != null) cache.put(start, solution);
+      result = new SolveResult(SolveResult.Status.Solved, start, pushes, solution, budget.getExpanded(), elapsedTime);
+    }
+    if(budget.getListener() != null) budget.getListener().finished(budget.getMetrics(), result);
+    return result;
+  }
+
+  /**
+   * キャッシュから取り出した解が、実際に初期状態からゴールに到達できるか確かめます
+   * @param start 初期状態
+   * @param generator 押し方の生成器
+   * @param solution LURD形式の解
+   * @return 押し方の番号の一覧。ゴールに到達できない場合はnull
+   */
+  private List<Integer> verify(MapState start, PushGenerator generator, String solution){
+    try{
+      List<Integer> pushes = generator.pushes(start, solution);
+      MapState end = start.deepClone();
+      for(int push : pushes){
+        end.makePush(PushGenerator.loadOf(push), PushGenerator.directionOf(push));
+      }
+      return end.isGoal() ? pushes : null;
+    }catch(IllegalArgumentException e){
+      return null;
+    }
+  }
+}
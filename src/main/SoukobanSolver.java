@@ -1,78 +1,126 @@
 package main;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.PriorityQueue;
 import java.util.Iterator;
+import java.util.List;
 
-import util.Direction;
+import map.Level;
+import map.LevelReader;
 import map.MapState;
+import deadlock.DeadlockChain;
+import deadlock.DeadlockDetector;
+import heuristic.PatternDatabase;
 
 public class SoukobanSolver{
 
-  private PriorityQueue<Node> queue;
-  private ArrayList<MapState> visited;
-
-  @SuppressWarnings("unchecked")
+  /**
+   * コンストラクタ。標準のデッドロック判定を使ってA*で問題を解き、結果を出力します
+   * @param problem 問題を表す文字列
+   */
   public SoukobanSolver(String problem){
-    queue = new PriorityQueue<Node>(1, new NodeComparator());
-    visited = new ArrayList<MapState>();
-    Node initial = new Node(MapState.parse(problem));
-    queue.add(initial);
-    Node current = null;
-    // 探索する
-    long start = System.currentTimeMillis();
-    while(!queue.isEmpty()){
-      current = queue.poll();
-      if(current.getCurrent().isGoal())
-        break;
-      Direction ds[] = Direction.values();
-      MapState map = current.getCurrent();
-      for(int i = 0; i < ds.length - 1; i += 2){
-        Direction d = ds[i];
-        if(!map.canMoveChara(d)) continue;
-        MapState newMap = map.moveChara(d);
-        if(visited.contains(newMap)) continue;
-        // 調査済みでなかったら、Queueに新しいノードを生成して格納
-        visited.add(newMap);
-        Node node = new Node(newMap, current);
-        queue.add(node);
-      }
-    }
-    long end = System.currentTimeMillis();
-    // 探索結果をたどる
-    Node currentNode = current;
-    ArrayList<MapState> result = new ArrayList<MapState>();
-    while(currentNode != null){
-      result.add(0, currentNode.getCurrent());
-      currentNode = currentNode.getParent();
+    this(problem, DeadlockChain.createDefault());
+  }
+
+  /**
+   * コンストラクタ。デッドロック判定を指定してA*で問題を解き、結果を出力します
+   * @param problem 問題を表す文字列
+   * @param detector 荷物を押すたびに実行するデッドロック判定
+   */
+  public SoukobanSolver(String problem, DeadlockDetector detector){
+    this(problem, new AStarEngine(detector));
+  }
+
+  /**
+   * コンストラクタ。探索エンジンを指定して問題を解き、結果を出力します
+   * @param problem 問題を表す文字列
+   * @param engine 探索エンジン
+   */
+  public SoukobanSolver(String problem, SearchEngine engine){
+    this(MapState.parse(problem), engine);
+  }
+
+  /**
+   * コンストラクタ。探索エンジンを指定して初期状態から問題を解き、結果を出力します
+   * @param start 初期状態
+   * @param engine 探索エンジン
+   */
+  public SoukobanSolver(MapState start, SearchEngine engine){
+    this(start, engine, new SearchBudget());
+  }
+
+  /**
+   * コンストラクタ。探索エンジンと予算を指定して初期状態から問題を解き、結果を出力します
+   * @param start 初期状態
+   * @param engine 探索エンジン
+   * @param budget 探索の予算。リスナーを設定すると途中経過を受け取れます
+   */
+  public SoukobanSolver(MapState start, SearchEngine engine, SearchBudget budget){
+    SolveResult result = new Solver(engine).solve(start, budget);
+    if(!result.isSolved()){
+      System.out.println("no solution");
+      System.out.println(result.getElapsedTime()/1000.0 + " second");
+      return;
     }
     // 結果出力
-    Iterator<MapState> itr = result.iterator();
+    Iterator<MapState> itr = result.getStates().iterator();
     while(itr.hasNext()){
       System.out.println(itr.next());
       if(itr.hasNext())
         System.out.println("↓");
     }
     System.out.println("finish");
-    System.out.println((end-start)/1000.0 + " second");
-    System.out.println(result.size() + " steps");
+    System.out.println(result.getElapsedTime()/1000.0 + " second");
+    System.out.println((result.getMoveCount() + 1) + " steps");
+    System.out.println(result.getPushCount() + " pushes");
   }
 
+  /**
+   * 名前から探索エンジンを生成します
+   * @param name エンジンの名前。astar（A*）、idastar（IDA*）、parallel（複数スレッドでのA*）、bidirectional（双方向探索）、external（外部記憶を使った幅優先探索）、macro（ゴール部屋のマクロを使うA*）またはpdb（パターンデータベースを使うA*）
+   * @return 探索エンジン
+   * @exception 知らない名前が渡されたとき、IllegalArgumentException
+   */
+  static public SearchEngine createEngine(String name) throws IllegalArgumentException{
+    if(name.equals("astar")){
+      return new AStarEngine(DeadlockChain.createDefault());
+    }else if(name.equals("idastar")){
+      return new IDAStarEngine(DeadlockChain.createDefault());
+    }else if(name.equals("parallel")){
+      return new ParallelAStarEngine();
+    }else if(name.equals("bidirectional")){
+      return new BidirectionalEngine(DeadlockChain.createDefault());
+    }else if(name.equals("external")){
+      return new ExternalEngine(DeadlockChain.createDefault());
+    }else if(name.equals("macro")){
+      return new AStarEngine(DeadlockChain.createDefault(), true);
+    }else if(name.equals("pdb")){
+      return new AStarEngine(DeadlockChain.createDefault()).setPatternDatabase(PatternDatabase.DEFAULT_DIRECTORY, true);
+    }
+    throw new IllegalArgumentException("不明な探索エンジン\"" + name + "\"が指定されました");
+  }
+
+  /**
+   * 問題を解きます
+   * @param args 1つ目に問題または問題集のファイル（省略時はsrc/problems/problem2）、2つ目に探索エンジンの名前（省略時はastar）、
+   * 3つ目に途中経過を標準エラー出力に出力する間隔（ミリ秒、省略時や0の場合は出力しない）を指定します
+   */
   public static void main(String[] args){
-    String problem = "";
+    String file = args.length > 0 ? args[0] : "src/problems/problem2";
+    String engine = args.length > 1 ? args[1] : "astar";
+    long interval = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    List<Level> levels = null;
     try{
-      FileReader fr = new FileReader("src/problems/problem2");
-      BufferedReader br = new BufferedReader(fr);
-      char tmp;
-      while((tmp = (char)br.read()) != (char)-1){
-        problem += String.valueOf(tmp);
-      }
-      br.close();
+      levels = LevelReader.read(new File(file));
     }catch(IOException e){
       e.printStackTrace();
       System.exit(1);
     }
-    SoukobanSolver ss = new SoukobanSolver(problem);
+    // 問題集の場合は、問題ごとに題名を出力してから解く
+    for(int i=0;i<levels.size();++i){
+      if(levels.size() > 1) System.out.println(levels.get(i).getTitle());
+      SearchBudget budget = new SearchBudget();
+      if(interval > 0) budget.setListener(new ProgressLogger(System.err), interval);
+      new SoukobanSolver(levels.get(i).getState(), createEngine(engine), budget);
+    }
   }
 }
@@ -0,0 +1,153 @@
+/**
+ * 
+ */
+package main;
+
+/**
+ * 探索済みの状態を64bitハッシュ値で管理する置換表です。<br>
+ * オープンアドレス法（線形探査）で実装されており、各状態について到達したときの最小の手数を保持します。<br>
+ * 状態そのものは保持しないため、64bitハッシュが衝突した別の状態は同一とみなされます
+ * @author giginet
+ *
+ */
+public class TranspositionTable{
+  /** 空きスロットを表すキーです。ハッシュ値が0の状態は別の値に置き換えて格納します */
+  static private final long EMPTY = 0L;
+  /** ハッシュ値0の代わりに格納する値です */
+  static private final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private int[] bestG = null;
+  private long[] keys = null;
+  private int mask = 0;
+  private int size = 0;
+
+  /**
+   * コンストラクタ。初期容量を指定して空の置換表を生成します
+   * @param capacity 初期容量
+   */
+  public TranspositionTable(int capacity){
+    int length = 16;
+    while(length < capacity * 2) length <<= 1;
+    allocate(length);
+  }
+
+  /**
+   * コンストラクタ。デフォルトの容量で空の置換表を生成します
+   */
+  public TranspositionTable(){
+    this(1 << 12);
+  }
+
+  /**
+   * ある状態に指定した手数で到達したことを登録します。<br>
+   * 未登録の状態か、登録済みの手数より少ない手数で到達した場合のみ登録し、trueを返します
+   * @param hash 状態のハッシュ値
+   * @param g 初期状態からの手数
+   * @return 新しく登録、または手数を更新したかどうか
+   */
+  public boolean offer(long hash, int g){
+    long key = hash == EMPTY ? ZERO_KEY : hash;
+    int i = slot(key);
+    while(keys[i] != EMPTY){
+      if(keys[i] == key){
+        if(g >= bestG[i]) return false;
+        bestG[i] = g;
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    bestG[i] = g;
+    if(++size * 2 > keys.length) grow();
+    return true;
+  }
+
+  /**
+   * ある状態に値を登録します。登録済みの値より大きくても上書きします。<br>
+   * 手数の代わりにNodeStoreでの番号などを登録し、状態から値を引く表として使うときに呼び出します
+   * @param hash 状態のハッシュ値
+   * @param value 登録する値。0以上である必要があります
+   */
+  public void put(long hash, int value){
+    long key = hash == EMPTY ? ZERO_KEY : hash;
+    int i = slot(key);
+    while(keys[i] != EMPTY){
+      if(keys[i] == key){
+        bestG[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    bestG[i] = value;
+    if(++size * 2 > keys.length) grow();
+  }
+
+  /**
+   * ある状態に到達したときの最小の手数を返します
+   * @param hash 状態のハッシュ値
+   * @return 最小の手数。未登録の場合は-1
+   */
+  public int get(long hash){
+    long key = hash == EMPTY ? ZERO_KEY : hash;
+    int i = slot(key);
+    while(keys[i] != EMPTY){
+      if(keys[i] == key) return bestG[i];
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * ある状態が登録済みかどうかを返します
+   * @param hash 状態のハッシュ値
+   * @return 登録済みかどうか
+   */
+  public boolean contains(long hash){
+    return get(hash) != -1;
+  }
+
+  /**
+   * 登録されている状態の数を返します
+   * @return 状態の数
+   */
+  public int size(){
+    return size;
+  }
+
+  /**
+   * 指定した長さの配列を確保します
+   * @param length 配列長。2の冪である必要があります
+   */
+  private void allocate(int length){
+    keys = new long[length];
+    bestG = new int[length];
+    mask = length - 1;
+  }
+
+  /**
+   * 表の大きさを2倍にして全ての要素を格納し直します
+   */
+  private void grow(){
+    long[] oldKeys = keys;
+    int[] oldG = bestG;
+    allocate(oldKeys.length * 2);
+    for(int j=0;j<oldKeys.length;++j){
+      if(oldKeys[j] == EMPTY) continue;
+      int i = slot(oldKeys[j]);
+      while(keys[i] != EMPTY) i = (i + 1) & mask;
+      keys[i] = oldKeys[j];
+      bestG[i] = oldG[j];
+    }
+  }
+
+  /**
+   * キーから最初に調べるスロットを求めます
+   * @param key キー
+   * @return スロット番号
+   */
+  private int slot(long key){
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int)(h >>> 32) & mask;
+  }
+}
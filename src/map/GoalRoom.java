@@ -0,0 +1,116 @@
+/**
+ * 
+ */
+package map;
+
+import util.Direction;
+
+/**
+ * 入口が1マスだけの、ゴールを含む部屋（ゴール部屋）を表すクラスです。Map#getGoalRoomsで求めます。<br>
+ * 荷物は入口の外から決まった向きに押されて部屋に入り、あらかじめ決めた順番（入口から遠いゴールから）でゴールに運ばれます。
+ * k番目の荷物の運び方は、1〜k-1番目のゴールにだけ荷物が置かれた部屋で、押す回数が最小になるように求めてあります
+ * @author giginet
+ *
+ */
+public class GoalRoom{
+  private long[] cells = null;
+  private Direction direction = null;
+  private int entrance = 0;
+  private long[][] filled = null;
+  private Direction[][] moves = null;
+  private int[][] paths = null;
+  private int[] slots = null;
+
+  /**
+   * コンストラクタ
+   * @param cells 部屋のマス（入口を除く）のビット列
+   * @param entrance 入口のマスのインデックス
+   * @param direction 入口から部屋に入る方向
+   * @param slots 荷物を置く順番に並べたゴールのインデックス
+   * @param paths 各ゴールまで運ぶときに、押す前の荷物の位置を順に並べたもの
+   * @param moves 各ゴールまで運ぶときに、押す方向を順に並べたもの
+   */
+  GoalRoom(long[] cells, int entrance, Direction direction, int[] slots, int[][] paths, Direction[][] moves){
+    this.cells = cells;
+    this.entrance = entrance;
+    this.direction = direction;
+    this.slots = slots;
+    this.paths = paths;
+    this.moves = moves;
+    // k個のゴールが埋まったときの荷物の配置をビット列にしておく
+    filled = new long[slots.length + 1][cells.length];
+    for(int k=0;k<slots.length;++k){
+      filled[k + 1] = filled[k].clone();
+      filled[k + 1][slots[k] >> 6] |= 1L << slots[k];
+    }
+  }
+
+  /**
+   * 入口のマスを返します
+   * @return 入口のマスのインデックス
+   */
+  public int getEntrance(){
+    return entrance;
+  }
+
+  /**
+   * 入口から部屋に入る方向を返します。荷物はこの向きに押されて入口に乗ったときだけ部屋に運ばれます
+   * @return 方向
+   */
+  public Direction getDirection(){
+    return direction;
+  }
+
+  /**
+   * 部屋のゴールの数を返します
+   * @return ゴールの数
+   */
+  public int getSlotCount(){
+    return slots.length;
+  }
+
+  /**
+   * k番目に荷物を置くゴールを返します
+   * @param k 順番（0から）
+   * @return ゴールのインデックス
+   */
+  public int getSlot(int k){
+    return slots[k];
+  }
+
+  /**
+   * k番目の荷物を入口からゴールまで運ぶときの、押す前の荷物の位置を順に返します。先頭は入口です
+   * @param k 順番（0から）
+   * @return 荷物の位置のインデックスの配列。呼び出し側で変更しないでください
+   */
+  public int[] getPath(int k){
+    return paths[k];
+  }
+
+  /**
+   * k番目の荷物を入口からゴールまで運ぶときの、押す方向を順に返します
+   * @param k 順番（0から）
+   * @return 方向の配列。呼び出し側で変更しないでください
+   */
+  public Direction[] getMoves(int k){
+    return moves[k];
+  }
+
+  /**
+   * 部屋の荷物が決めた順番どおりに置かれているとき、置かれている荷物の数を返します
+   * @param state 状態
+   * @return 荷物の数。順番どおりでない荷物がある場合は-1
+   */
+  public int countFilled(MapState state){
+    long[] loads = state.getLoadBits();
+    int count = 0;
+    for(int i=0;i<cells.length;++i){
+      count += Long.bitCount(loads[i] & cells[i]);
+    }
+    if(count > slots.length) return -1;
+    for(int i=0;i<cells.length;++i){
+      if((loads[i] & cells[i]) != filled[count][i]) return -1;
+    }
+    return count;
+  }
+}
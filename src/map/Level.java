@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package map;
+
+/**
+ * 問題集に含まれる1つの問題を、題名と初期状態の組で保持するクラスです
+ * @author giginet
+ *
+ */
+public class Level{
+  private MapState state = null;
+  private String title = null;
+
+  /**
+   * コンストラクタ
+   * @param title 問題の題名
+   * @param state 問題の初期状態
+   */
+  public Level(String title, MapState state){
+    this.title = title;
+    this.state = state;
+  }
+
+  /**
+   * 問題の初期状態を返します
+   * @return 初期状態
+   */
+  public MapState getState(){
+    return state;
+  }
+
+  /**
+   * 問題の題名を返します
+   * @return 題名
+   */
+  public String getTitle(){
+    return title;
+  }
+}
@@ -0,0 +1,305 @@
+/**
+ * 
+ */
+package map;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 問題集を先頭から順に読み込むクラスです。<br>
+ * 標準的なXSB/.sok形式と、このプログラム独自の形式（MapState#parse）の両方を読み込めます。
+ * どちらの形式かは問題ごとに、使われている記号から判定します。<br>
+ * <table>
+ * <tr><th>XSB形式</th><th>独自形式</th><th>意味</th></tr>
+ * <tr><td>#</td><td>#</td><td>壁</td></tr>
+ * <tr><td>空白 - _</td><td>.</td><td>床</td></tr>
+ * <tr><td>.</td><td>G</td><td>ゴール</td></tr>
+ * <tr><td>$</td><td>*</td><td>荷物</td></tr>
+ * <tr><td>*</td><td>+</td><td>ゴールに乗った荷物</td></tr>
+ * <tr><td>@</td><td>@</td><td>キャラクター</td></tr>
+ * <tr><td>+</td><td>a</td><td>ゴールに乗ったキャラクター</td></tr>
+ * </table>
+ * #を含み、マップの記号だけでできた行が続く部分を1つの問題として読み込みます。
+ * 問題の後にある「Title:」で始まる行か、問題の前にある;で始まるコメント行を題名とし、それ以外の行は読み飛ばします。<br>
+ * ファイルはメモリにマップしてバイト単位で読むので、マスごとに文字列を生成しません
+ * @author giginet
+ *
+ */
+public class LevelReader{
+  private ByteBuffer buffer = null;
+  private int count = 0;
+  private String name = null;
+  private int position = 0;
+
+  /**
+   * コンストラクタ。バッファの現在位置から末尾までを読み込みます
+   * @param buffer 問題集の内容
+   * @param name 題名が無い問題に付ける名前。問題が2つ以上ある場合は後ろに番号を付けます
+   */
+  public LevelReader(ByteBuffer buffer, String name){
+    this.buffer = buffer;
+    this.name = name;
+    this.position = buffer.position();
+  }
+
+  /**
+   * ファイルに含まれる全ての問題を読み込みます
+   * @param file 問題集のファイル
+   * @return 問題の一覧
+   * @throws IOException 読み込みに失敗したとき
+   * @throws IllegalArgumentException 正しくない問題が含まれていたとき
+   */
+  static public List<Level> read(File file) throws IOException, IllegalArgumentException{
+    LevelReader reader = open(file);
+    ArrayList<Level> levels = new ArrayList<Level>();
+    Level level;
+    while((level = reader.next()) != null){
+      levels.add(level);
+    }
+    return levels;
+  }
+
+  /**
+   * ファイルをメモリにマップして読み込む準備をします
+   * @param file 問題集のファイル
+   * @return ファイルを読み込むLevelReader
+   * @throws IOException 読み込みに失敗したとき
+   */
+  static public LevelReader open(File file) throws IOException{
+    FileInputStream stream = new FileInputStream(file);
+    try{
+      FileChannel channel = stream.getChannel();
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new LevelReader(buffer, file.getName());
+    }finally{
+      stream.close();
+    }
+  }
+
+  /**
+   * 次の問題を読み込みます。正しくない問題で例外を投げた場合も、続けて次の問題を読み込めます
+   * @return 読み込んだ問題。全て読み込んだ場合はnull
+   * @throws IllegalArgumentException 問題が正しくないとき
+   */
+  public Level next() throws IllegalArgumentException{
+    int limit = buffer.limit();
+    String title = null;
+    // 問題の始まりまで読み飛ばし、その間のコメントを題名の候補にする
+    while(position < limit){
+      int end = lineEnd(position);
+      if(isBoardLine(position, end)) break;
+      if(buffer.get(position) == ';'){
+        String comment = text(position + 1, end);
+        if(comment.length() > 0) title = comment;
+      }
+      position = nextLine(position);
+    }
+    if(position >= limit) return null;
+    // 問題の範囲と大きさを求める
+    int start = position;
+    int width = 0, height = 0;
+    while(position < limit){
+      int end = lineEnd(position);
+      if(!isBoardLine(position, end)) break;
+      width = Math.max(width, end - position);
+      ++height;
+      position = nextLine(end);
+    }
+    // 問題の後にある「Title:」の行を題名にする
+    boolean last = true;
+    for(int line = position; line < limit; line = nextLine(line)){
+      int end = lineEnd(line);
+      if(isBoardLine(line, end)){
+        last = false;
+        break;
+      }
+      if(startsWith(line, end, "title:")){
+        title = text(line + 6, end);
+        break;
+      }
+    }
+    ++count;
+    // 題名が無ければ、問題が1つだけのファイルではファイル名、それ以外は番号を付けた名前にする
+    if(title == null || title.length() == 0) title = count == 1 && last ? name : name + "#" + count;
+    return new Level(title, parse(start, width, height));
+  }
+
+  /**
+   * 問題の範囲のバイト列からマップの状態を生成します
+   * @param start 問題の最初の行の位置
+   * @param width 一番長い行の長さ
+   * @param height 行数
+   * @return 問題の初期状態
+   * @throws IllegalArgumentException 問題が正しくないとき
+   */
+  private MapState parse(int start, int width, int height) throws IllegalArgumentException{
+    boolean xsb = isXsb(start, height);
+    byte cells[] = new byte[width * height];
+    int loads[] = new int[width * height];
+    int loadCount = 0, goalCount = 0;
+    int chara = -1;
+    int line = start;
+    for(int y=0;y<height;++y){
+      int end = lineEnd(line);
+      for(int x=0;x<width;++x){
+        int index = y * width + x;
+        // 短い行の右側は壁で埋める
+        if(line + x >= end){
+          cells[index] = Map.WALL;
+          continue;
+        }
+        byte c = buffer.get(line + x);
+        boolean load = false, goal = false, player = false;
+        if(c == '#'){
+          cells[index] = Map.WALL;
+          continue;
+        }else if(xsb){
+          load = c == '$' || c == '*';
+          goal = c == '.' || c == '*' || c == '+';
+          player = c == '@' || c == '+';
+        }else{
+          load = c == '*' || c == '+';
+          goal = c == 'G' || c == '+' || c == 'a';
+          player = c == '@' || c == 'a';
+        }
+        cells[index] = goal ? Map.GOAL : Map.FLOOR;
+        if(goal) ++goalCount;
+        if(load) loads[loadCount++] = index;
+        if(player){
+          if(chara != -1) throw new IllegalArgumentException("キャラクターは1カ所にしか設置できません");
+          chara = index;
+        }
+      }
+      line = nextLine(line);
+    }
+    if(chara == -1){
+      throw new IllegalArgumentException("キャラクターを設置する必要があります");
+    }
+    if(loadCount == 0){
+      throw new IllegalArgumentException("荷物を１つは設置する必要があります");
+    }else if(loadCount != goalCount){
+      throw new IllegalArgumentException("荷物とゴールの数が一致している必要があります");
+    }
+    Map map = new Map(cells, width, height);
+    long bits[] = new long[map.wordCount()];
+    for(int i=0;i<loadCount;++i){
+      bits[loads[i] >> 6] |= 1L << loads[i];
+    }
+    return new MapState(map, chara, bits);
+  }
+
+  /**
+   * 問題がXSB形式かどうかを判定します。
+   * XSB形式にしか無い記号（$、-、_）があればXSB形式、独自形式にしか無い記号（G、a）があれば独自形式とします。
+   * どちらも無い場合は、行末の空白を除いて空白が残っていればXSB形式とします
+   * @param start 問題の最初の行の位置
+   * @param height 行数
+   * @return XSB形式かどうか
+   * @throws IllegalArgumentException 両方の形式の記号が混ざっているとき
+   */
+  private boolean isXsb(int start, int height) throws IllegalArgumentException{
+    boolean xsb = false, custom = false, space = false;
+    int line = start;
+    for(int y=0;y<height;++y){
+      int end = lineEnd(line);
+      // 行末の空白はどちらの形式でも付くことがあるので判定に使わない
+      while(end > line && buffer.get(end - 1) == ' ') --end;
+      for(int i=line;i<end;++i){
+        byte c = buffer.get(i);
+        if(c == '$' || c == '-' || c == '_') xsb = true;
+        if(c == ' ') space = true;
+        if(c == 'G' || c == 'a') custom = true;
+      }
+      line = nextLine(line);
+    }
+    if(xsb && custom) throw new IllegalArgumentException("XSB形式と独自形式の記号が混ざっています");
+    return xsb || (space && !custom);
+  }
+
+  /**
+   * ある行が問題の一部かどうかを判定します。#を含み、マップの記号だけでできている行を問題の一部とします
+   * @param start 行の始まりの位置
+   * @param end 行の終わりの位置（改行を含まない）
+   * @return 問題の一部かどうか
+   */
+  private boolean isBoardLine(int start, int end){
+    boolean wall = false;
+    for(int i=start;i<end;++i){
+      switch(buffer.get(i)){
+      case '#':
+        wall = true;
+        break;
+      case ' ': case '-': case '_': case '.': case '$': case '*': case '@': case '+': case 'G': case 'a':
+        break;
+      default:
+        return false;
+      }
+    }
+    return wall;
+  }
+
+  /**
+   * ある行が指定した文字列で始まるかどうかを、英字の大文字と小文字を区別せずに判定します
+   * @param start 行の始まりの位置
+   * @param end 行の終わりの位置
+   * @param prefix 小文字で書いた文字列
+   * @return 指定した文字列で始まるかどうか
+   */
+  private boolean startsWith(int start, int end, String prefix){
+    if(end - start < prefix.length()) return false;
+    for(int i=0;i<prefix.length();++i){
+      if(Character.toLowerCase((char)buffer.get(start + i)) != prefix.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * 行の終わり（改行文字の位置）を求めます。行末の\rは含めません
+   * @param start 行の始まりの位置
+   * @return 行の終わりの位置
+   */
+  private int lineEnd(int start){
+    int limit = buffer.limit();
+    int end = start;
+    while(end < limit && buffer.get(end) != '\n') ++end;
+    if(end > start && buffer.get(end - 1) == '\r') --end;
+    return end;
+  }
+
+  /**
+   * 次の行の始まりの位置を求めます
+   * @param start 行の始まり、または行の途中の位置
+   * @return 次の行の始まりの位置。最後の行の場合はバッファの末尾
+   */
+  private int nextLine(int start){
+    int limit = buffer.limit();
+    int end = start;
+    while(end < limit && buffer.get(end) != '\n') ++end;
+    return end < limit ? end + 1 : limit;
+  }
+
+  /**
+   * バッファの一部をUTF-8の文字列として取り出し、前後の空白を取り除きます
+   * @param start 始まりの位置
+   * @param end 終わりの位置
+   * @return 文字列
+   */
+  private String text(int start, int end){
+    byte bytes[] = new byte[end - start];
+    for(int i=0;i<bytes.length;++i){
+      bytes[i] = buffer.get(start + i);
+    }
+    try{
+      return new String(bytes, "UTF-8").trim();
+    }catch(UnsupportedEncodingException e){
+      throw new IllegalStateException(e);
+    }
+  }
+}
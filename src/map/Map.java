@@ -10,23 +10,64 @@ package map;
 import java.util.*;
 import java.awt.*;
 import util.Direction;
+import util.Hungarian;
 
 /**
+ * 迷路の地形を管理するクラスです。<br>
+ * 各マスの種類はインデックス（y*幅+x）で引けるbyte配列で保持し、
+ * 4方向の隣接マスのインデックスも生成時に計算しておきます。
+ * Chipのサブクラスは{@link #getChipAt(Point)}で取り出すときにだけ生成されます
  * @author giginet
  *
  */
 public class Map{
   
-  private HashSet<Point> goals = null;
+  /** 床を表すマスの種類です */
+  static public final byte FLOOR = 0;
+  /** 壁を表すマスの種類です */
+  static public final byte WALL = 1;
+  /** ゴールを表すマスの種類です */
+  static public final byte GOAL = 2;
+  
+  /** 荷物をゴールまで押せないことを表す押す回数です */
+  static public final int UNREACHABLE = Hungarian.INFINITY;
+  
+  /** Zobristハッシュの乱数表を生成するときのシード値です */
+  static private final long ZOBRIST_SEED = 0x536f756b6f62616eL;
+  /** 押す回数の表を保持しておくマップの数です */
+  static private final int DISTANCE_CACHE_SIZE = 64;
+  /** 全てのマップで共有するZobristハッシュ用の乱数表です */
+  static private long[][] zobristKeys = new long[2][0];
+  /** 同じ地形のマップの間で押す回数の表を共有するためのキャッシュです */
+  static private final LinkedHashMap<Map, int[]> distanceCache = new LinkedHashMap<Map, int[]>(16, 0.75f, true){
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    protected boolean removeEldestEntry(java.util.Map.Entry<Map, int[]> eldest){
+      return size() > DISTANCE_CACHE_SIZE;
+    }
+  };
+  
+  private int[][] automorphisms = null;
+  private byte[] cells = null;
+  private long[] charaKeys = null;
+  private boolean[] deadSquares = null;
+  private long[] goalBits = null;
+  private int[] goalIndices = null;
+  private volatile GoalRoom[] goalRooms = null;
+  private volatile HashSet<Point> goals = null;
   private int height = 0;
-  private HashMap<Point, Chip> map = null;
+  private long[] loadKeys = null;
+  private int[][] neighbors = null;
+  private volatile int[] pushDistances = null;
+  private boolean[][] tunnels = null;
   private int width = 0;
   
   /**
    * コンストラクタ。大きさ0の空のマップを生成します
    */
   public Map(){
-    map = new HashMap<Point, Chip>();
+    this(new byte[0], 0, 0);
   }
   
   /**
@@ -35,8 +76,6 @@ public class Map{
    * @exception 渡されたマップのサイズが不正なとき、IllegalArgumentException
    */
   public Map(HashMap<Point, Chip> map) throws IllegalArgumentException{
-    this.map = map;
-    this.goals = new HashSet<Point>();
     int max = 0;
     if(map.size() == 0) throw new IllegalArgumentException("渡されたマップが空です");
     // マップの横幅を算出する
@@ -44,17 +83,97 @@ public class Map{
     while(itr.hasNext()){
       Point p = itr.next();
       if(p.x > max) max = p.x;
-      Chip chip = map.get(p);
-      if(chip.isGoal()){
-        goals.add((Point)p.clone());
-      }
     }
-    width = max+1;
+    int w = max+1;
     // マップの高さを算出する
-    if(map.size()%width != 0){
+    if(map.size()%w != 0){
+      throw new IllegalArgumentException("渡されたマップのサイズが不正です");
+    }
+    int h = map.size()/w;
+    byte[] grid = new byte[w*h];
+    itr = map.keySet().iterator();
+    while(itr.hasNext()){
+      Point p = itr.next();
+      Chip chip = map.get(p);
+      grid[p.y*w + p.x] = chip.isGoal() ? GOAL : chip.canThrough() ? FLOOR : WALL;
+    }
+    init(grid, w, h);
+  }
+  
+  /**
+   * コンストラクタ。マスの種類を並べた配列からマップを初期化します
+   * @param cells マスの種類（FLOOR, WALL, GOAL）をインデックス順に並べた配列
+   * @param width マップの幅
+   * @param height マップの高さ
+   * @exception 配列の長さと大きさが一致しないとき、IllegalArgumentException
+   */
+  public Map(byte[] cells, int width, int height) throws IllegalArgumentException{
+    if(cells.length != width*height){
       throw new IllegalArgumentException("渡されたマップのサイズが不正です");
     }
-    height = map.size()/width;
+    init(cells, width, height);
+  }
+  
+  /**
+   * マスの配列から、ゴールの一覧、隣接マスの表、Zobristハッシュの乱数表を作成します
+   * @param grid マスの種類の配列
+   * @param w マップの幅
+   * @param h マップの高さ
+   */
+  private void init(byte[] grid, int w, int h){
+    this.cells = grid;
+    this.width = w;
+    this.height = h;
+    // ゴールの位置を一覧とビット列にしておく
+    goalBits = new long[wordCount()];
+    int goalCount = 0;
+    for(int i=0;i<cells.length;++i){
+      if(cells[i] == GOAL) ++goalCount;
+    }
+    goalIndices = new int[goalCount];
+    for(int i=0, j=0;i<cells.length;++i){
+      if(cells[i] != GOAL) continue;
+      goalIndices[j++] = i;
+      goalBits[i >> 6] |= 1L << i;
+    }
+    // 各方向の隣接マスのインデックスを求めておく
+    Direction ds[] = Direction.values();
+    neighbors = new int[ds.length][cells.length];
+    for(int j=0;j<ds.length;++j){
+      Point d = movePoint(new Point(0, 0), ds[j]);
+      for(int y=0, i=0;y<height;++y){
+        for(int x=0;x<width;++x, ++i){
+          int nx = x + d.x, ny = y + d.y;
+          neighbors[j][i] = (0 <= nx && nx < width && 0 <= ny && ny < height) ? ny * width + nx : -1;
+        }
+      }
+    }
+    deadSquares = findDeadSquares();
+    automorphisms = findAutomorphisms();
+    tunnels = findTunnels();
+    // Zobristハッシュ用の乱数表は全てのマップで共有する
+    long keys[][] = zobristKeys(cells.length);
+    charaKeys = keys[0];
+    loadKeys = keys[1];
+  }
+
+  /**
+   * Zobristハッシュ用の乱数表を返します。
+   * 乱数表は同じ種から作るのでマップによらずインデックスごとに同じ値になります。そのため一番大きいマップの分だけ作って共有します
+   * @param count 必要なマスの数
+   * @return キャラクター用と荷物用の乱数表。長さはcount以上です
+   */
+  static private synchronized long[][] zobristKeys(int count){
+    if(zobristKeys[0].length < count){
+      Random random = new Random(ZOBRIST_SEED);
+      long keys[][] = new long[2][Math.max(count, zobristKeys[0].length * 2)];
+      for(int i=0;i<keys[0].length;++i){
+        keys[0][i] = random.nextLong();
+        keys[1][i] = random.nextLong();
+      }
+      zobristKeys = keys;
+    }
+    return zobristKeys;
   }
   
   /**
@@ -104,38 +223,421 @@ public class Map{
     return p;
   }
  
+  /**
+   * 指定したマスに荷物やキャラクターが進入可能な地形かどうかを返します
+   * @param index マスのインデックス
+   * @return 壁でなければtrue
+   */
+  public boolean canThrough(int index){
+    return cells[index] != WALL;
+  }
+  
+  /**
+   * 荷物を置くと、どのゴールにも運べなくなるマスを求めます。<br>
+   * 各ゴールから荷物を引く操作（荷物の移動先とキャラクターの立ち位置の2マスが壁でないときに1マス引ける）を
+   * 幅優先で繰り返し、到達できなかったマスをデッドスクエアとします。荷物同士の干渉は考慮しません
+   * @return 各マスがデッドスクエアかどうかの配列
+   */
+  private boolean[] findDeadSquares(){
+    boolean[] live = new boolean[cells.length];
+    int[] queue = new int[cells.length];
+    int head = 0, tail = 0;
+    for(int i=0;i<goalIndices.length;++i){
+      live[goalIndices[i]] = true;
+      queue[tail++] = goalIndices[i];
+    }
+    Direction ds[] = Direction.values();
+    while(head < tail){
+      int load = queue[head++];
+      for(int i=0;i<ds.length;i+=2){
+        int next = neighbors[i][load];
+        if(next < 0 || live[next] || !canThrough(next)) continue;
+        int chara = neighbors[i][next];
+        if(chara < 0 || !canThrough(chara)) continue;
+        live[next] = true;
+        queue[tail++] = next;
+      }
+    }
+    boolean[] dead = new boolean[cells.length];
+    for(int i=0;i<cells.length;++i){
+      dead[i] = !live[i];
+    }
+    return dead;
+  }
+  
+  /**
+   * 盤面を自分自身に重ねる回転と鏡映（自己同型）を求めます。<br>
+   * ゴールから壁を通らずに行けるマス（内部）だけを比べるので、外側の壁や床の形が違っていても、
+   * 内部を囲む長方形の中で内部のマスの種類が重なれば対称とみなします
+   * @return 恒等変換を除く自己同型ごとに、内部のマスの移動先のインデックスを並べた配列。内部以外のマスは自分自身に移ります
+   */
+  private int[][] findAutomorphisms(){
+    boolean[] inside = new boolean[cells.length];
+    int[] queue = new int[cells.length];
+    int head = 0, tail = 0;
+    for(int i=0;i<goalIndices.length;++i){
+      inside[goalIndices[i]] = true;
+      queue[tail++] = goalIndices[i];
+    }
+    while(head < tail){
+      int index = queue[head++];
+      for(int i=0;i<neighbors.length;i+=2){
+        int next = neighbors[i][index];
+        if(next < 0 || inside[next] || !canThrough(next)) continue;
+        inside[next] = true;
+        queue[tail++] = next;
+      }
+    }
+    if(tail == 0) return new int[0][];
+    // 内部を囲む長方形の中で変換する
+    int left = width, top = height, right = -1, bottom = -1;
+    for(int i=0;i<tail;++i){
+      int x = queue[i] % width, y = queue[i] / width;
+      left = Math.min(left, x);
+      right = Math.max(right, x);
+      top = Math.min(top, y);
+      bottom = Math.max(bottom, y);
+    }
+    int w = right - left + 1, h = bottom - top + 1;
+    ArrayList<int[]> result = new ArrayList<int[]>();
+    for(Symmetry symmetry : Symmetry.ALL){
+      if(symmetry == Symmetry.IDENTITY || symmetry.getWidth(w, h) != w) continue;
+      int[] permutation = new int[cells.length];
+      for(int i=0;i<cells.length;++i){
+        permutation[i] = i;
+      }
+      boolean matched = true;
+      for(int i=0;i<tail && matched;++i){
+        int from = queue[i];
+        int to = symmetry.transform((from / width - top) * w + from % width - left, w, h);
+        to = (to / w + top) * width + to % w + left;
+        permutation[from] = to;
+        matched = inside[to] && cells[to] == cells[from];
+      }
+      if(matched) result.add(permutation);
+    }
+    return result.toArray(new int[result.size()][]);
+  }
+
+  /**
+   * 荷物を押して通すとき、押す方向と直交する両側が壁（またはマップ外）になっているマス（トンネル）を求めます
+   * @return 上下に押す場合と左右に押す場合の、各マスがトンネルかどうかの配列
+   */
+  private boolean[][] findTunnels(){
+    boolean[][] result = new boolean[2][cells.length];
+    for(int i=0;i<cells.length;++i){
+      if(!canThrough(i)) continue;
+      // 上下に押す場合は左右、左右に押す場合は上下が壁
+      result[0][i] = isBlocked(neighbors[Direction.West.ordinal()][i]) && isBlocked(neighbors[Direction.East.ordinal()][i]);
+      result[1][i] = isBlocked(neighbors[Direction.North.ordinal()][i]) && isBlocked(neighbors[Direction.South.ordinal()][i]);
+    }
+    return result;
+  }
+
+  /**
+   * マスが壁かマップ外かを返します
+   * @param index マスのインデックス。マップ外の場合は-1
+   * @return 壁かマップ外かどうか
+   */
+  private boolean isBlocked(int index){
+    return index < 0 || !canThrough(index);
+  }
+
+  /**
+   * ゴール部屋を求めます。<br>
+   * 入口の候補のマスを1つずつ塞ぎ、その先の領域が入口の反対側から切り離されていて、ゴールを含む場合に部屋の候補とします。
+   * 部屋に続く通路のマスも入口の候補になるので、重なる候補のうち小さいものから順に使い、
+   * 決めた順番でゴールを埋められない部屋は使いません
+   * @return ゴール部屋の一覧
+   */
+  private GoalRoom[] findGoalRooms(){
+    ArrayList<boolean[]> regions = new ArrayList<boolean[]>();
+    ArrayList<int[]> candidates = new ArrayList<int[]>();
+    int[] queue = new int[cells.length];
+    for(int entrance=0;entrance<cells.length;++entrance){
+      if(cells[entrance] != FLOOR) continue;
+      for(int j=0;j<neighbors.length;j+=2){
+        // 入口の外に荷物と、荷物を押すキャラクターが立てる必要がある
+        int inside = neighbors[j][entrance];
+        int behind = neighbors[(j + 4) & 7][entrance];
+        if(isBlocked(inside) || isBlocked(behind) || isBlocked(neighbors[(j + 4) & 7][behind])) continue;
+        boolean[] region = new boolean[cells.length];
+        region[entrance] = true;
+        region[inside] = true;
+        int head = 0, tail = 0, goalCount = 0;
+        queue[tail++] = inside;
+        while(head < tail){
+          int index = queue[head++];
+          if(cells[index] == GOAL) ++goalCount;
+          for(int i=0;i<neighbors.length;i+=2){
+            int next = neighbors[i][index];
+            if(isBlocked(next) || region[next]) continue;
+            region[next] = true;
+            queue[tail++] = next;
+          }
+        }
+        region[entrance] = false;
+        if(region[behind] || goalCount == 0) continue;
+        regions.add(region);
+        candidates.add(new int[]{entrance, j, tail, regions.size() - 1});
+      }
+    }
+    Collections.sort(candidates, new Comparator<int[]>(){
+      public int compare(int[] a, int[] b){
+        return a[2] != b[2] ? a[2] - b[2] : a[3] - b[3];
+      }
+    });
+    boolean[] used = new boolean[cells.length];
+    ArrayList<GoalRoom> rooms = new ArrayList<GoalRoom>();
+    for(int[] candidate : candidates){
+      boolean[] region = regions.get(candidate[3]);
+      boolean overlapped = used[candidate[0]];
+      for(int i=0;i<cells.length && !overlapped;++i){
+        overlapped = region[i] && used[i];
+      }
+      if(overlapped) continue;
+      GoalRoom room = planGoalRoom(region, candidate[0], candidate[1]);
+      if(room == null) continue;
+      used[candidate[0]] = true;
+      for(int i=0;i<cells.length;++i){
+        used[i] |= region[i];
+      }
+      rooms.add(room);
+    }
+    return rooms.toArray(new GoalRoom[rooms.size()]);
+  }
+
+  /**
+   * ゴール部屋のゴールを埋める順番と、各ゴールまでの運び方を求めます。<br>
+   * 荷物を入口に置き、キャラクターを入口の外に立たせた状態から、それまでに埋めたゴールを壁とみなして幅優先で荷物を押し、
+   * 空いているゴールのうち押す回数が一番多いものを次に埋めます
+   * @param region 部屋のマス
+   * @param entrance 入口のマスのインデックス
+   * @param j 入口から部屋に入る方向のDirectionの添字
+   * @return ゴール部屋。全てのゴールを埋められない場合はnull
+   */
+  private GoalRoom planGoalRoom(boolean[] region, int entrance, int j){
+    Direction ds[] = Direction.values();
+    int behind = neighbors[(j + 4) & 7][entrance];
+    // キャラクターは部屋と入口、入口の外の1マスだけを歩く
+    boolean[] area = region.clone();
+    area[entrance] = true;
+    area[behind] = true;
+    ArrayList<Integer> goals = new ArrayList<Integer>();
+    long[] bits = new long[wordCount()];
+    for(int i=0;i<cells.length;++i){
+      if(!region[i]) continue;
+      bits[i >> 6] |= 1L << i;
+      if(cells[i] == GOAL) goals.add(i);
+    }
+    int[] slots = new int[goals.size()];
+    int[][] paths = new int[goals.size()][];
+    Direction[][] moves = new Direction[goals.size()][];
+    // 調べている状態でキャラクターが歩けるマスと、押した後の状態を正規化するときに歩けるマスを別々に塗る
+    int[] mark = new int[cells.length], work = new int[cells.length];
+    int[] queue = new int[cells.length];
+    int stamp = 0;
+    for(int k=0;k<slots.length;++k){
+      HashMap<Long, long[]> parents = new HashMap<Long, long[]>();
+      ArrayList<Long> states = new ArrayList<Long>();
+      long start = (long)entrance * cells.length + reach(area, entrance, behind, work, queue, ++stamp);
+      parents.put(start, null);
+      states.add(start);
+      long best = -1;
+      // 幅優先なので、後に見つかるほど押す回数が多い
+      for(int head=0;head<states.size();++head){
+        long state = states.get(head);
+        int load = (int)(state / cells.length);
+        if(cells[load] == GOAL && region[load]) best = state;
+        int current = ++stamp;
+        reach(area, load, (int)(state % cells.length), mark, queue, current);
+        for(int i=0;i<neighbors.length;i+=2){
+          int stand = neighbors[(i + 4) & 7][load];
+          int to = neighbors[i][load];
+          if(stand < 0 || mark[stand] != current || to < 0 || !area[to]) continue;
+          long next = (long)to * cells.length + reach(area, to, load, work, queue, ++stamp);
+          if(parents.containsKey(next)) continue;
+          parents.put(next, new long[]{state, i});
+          states.add(next);
+        }
+      }
+      if(best < 0) return null;
+      ArrayList<Integer> path = new ArrayList<Integer>();
+      ArrayList<Direction> directions = new ArrayList<Direction>();
+      for(long state = best; parents.get(state) != null; state = parents.get(state)[0]){
+        long[] parent = parents.get(state);
+        path.add(0, (int)(parent[0] / cells.length));
+        directions.add(0, ds[(int)parent[1]]);
+      }
+      slots[k] = (int)(best / cells.length);
+      // 埋めたゴールは、以降は壁とみなす
+      area[slots[k]] = false;
+      paths[k] = new int[path.size()];
+      moves[k] = directions.toArray(new Direction[directions.size()]);
+      for(int i=0;i<path.size();++i){
+        paths[k][i] = path.get(i);
+      }
+    }
+    return new GoalRoom(bits, entrance, ds[j], slots, paths, moves);
+  }
+
+  /**
+   * ゴール部屋の中でキャラクターが歩けるマスを塗りつぶします
+   * @param area 歩けるマス
+   * @param load 荷物の位置
+   * @param chara キャラクターの位置
+   * @param mark 塗りつぶしたマスにstampを書き込む配列
+   * @param queue 作業用の配列
+   * @param stamp 書き込む値
+   * @return 歩けるマスのうち一番小さいインデックス
+   */
+  private int reach(boolean[] area, int load, int chara, int[] mark, int[] queue, int stamp){
+    int head = 0, tail = 0, min = chara;
+    queue[tail++] = chara;
+    mark[chara] = stamp;
+    while(head < tail){
+      int index = queue[head++];
+      if(index < min) min = index;
+      for(int i=0;i<neighbors.length;i+=2){
+        int next = neighbors[i][index];
+        if(next < 0 || !area[next] || next == load || mark[next] == stamp) continue;
+        mark[next] = stamp;
+        queue[tail++] = next;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * 各ゴールから荷物を引く操作を幅優先で繰り返し、全てのマスから全てのゴールまで押す回数の最小値を求めます
+   * @return マスcellからgoalIndicesのg番目のゴールまでの押す回数をcell*ゴール数+gに格納した配列
+   */
+  private int[] findPushDistances(){
+    int goalCount = goalIndices.length;
+    int[] table = new int[cells.length * goalCount];
+    Arrays.fill(table, UNREACHABLE);
+    int[] queue = new int[cells.length];
+    Direction ds[] = Direction.values();
+    for(int g=0;g<goalCount;++g){
+      int head = 0, tail = 0;
+      table[goalIndices[g] * goalCount + g] = 0;
+      queue[tail++] = goalIndices[g];
+      while(head < tail){
+        int load = queue[head++];
+        int distance = table[load * goalCount + g] + 1;
+        for(int i=0;i<ds.length;i+=2){
+          int next = neighbors[i][load];
+          if(next < 0 || table[next * goalCount + g] != UNREACHABLE || !canThrough(next)) continue;
+          int chara = neighbors[i][next];
+          if(chara < 0 || !canThrough(chara)) continue;
+          table[next * goalCount + g] = distance;
+          queue[tail++] = next;
+        }
+      }
+    }
+    return table;
+  }
+  
   /**
    * @see java.lang.Object#equals(java.lang.Object)
    */
   @Override
   public boolean equals(Object obj){
+    if(this == obj) return true;
+    if(!(obj instanceof Map)) return false;
     Map other = (Map)obj;
-    Iterator<Point> itr = map.keySet().iterator();
-    while(itr.hasNext()){
-      Point key = itr.next();
-      if(!(this.getChipAt(key).equals(other.getChipAt(key)))) return false;
-    }
-    return this.getWidth() == other.getWidth() && this.getHeight() == other.getHeight();
+    return this.getWidth() == other.getWidth() && this.getHeight() == other.getHeight() && Arrays.equals(cells, other.cells);
+  }
+  
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode(){
+    return Arrays.hashCode(cells) * 31 + width;
+  }
+  
+  /**
+   * 指定されたマスの種類を返します
+   * @param index マスのインデックス
+   * @return FLOOR, WALL, GOALのいずれか
+   */
+  public byte getCellType(int index){
+    return cells[index];
   }
   
   /**
-   * 指定された座標にあるマスを取り出します。見つからない場合はnullを返します
+   * 指定された座標にあるマスを取り出します。見つからない場合はnullを返します。<br>
+   * マスは呼び出しのたびに生成されるので、探索の内部ではインデックスを使うメソッドを利用してください
    * @param p 取り出したい座標
    * @return その座標にあるマス。ない場合はnull
    */
   public Chip getChipAt(Point p){
-    if(this.map.containsKey(p)){
-      return this.map.get(p);
-    }else{
-      return null;
+    if(p.x < 0 || p.x >= width || p.y < 0 || p.y >= height) return null;
+    switch(cells[indexOf(p)]){
+    case WALL:
+      return new Wall(p);
+    case GOAL:
+      return new Goal(p);
+    default:
+      return new Floor(p);
     }
   }
 
+  /**
+   * マス目の総数を返します
+   * @return マス目の数
+   */
+  public int getCellCount(){
+    return width*height;
+  }
+  
+  /**
+   * 指定したマスにキャラクターがいるときのZobristキーを返します
+   * @param index マスのインデックス
+   * @return Zobristキー
+   */
+  public long getCharaKey(int index){
+    return charaKeys[index];
+  }
+  
+  /**
+   * 指定したマスに荷物があるときのZobristキーを返します
+   * @param index マスのインデックス
+   * @return Zobristキー
+   */
+  public long getLoadKey(int index){
+    return loadKeys[index];
+  }
+
+  /**
+   * ゴールの位置をマスのインデックスのビット列で返します
+   * @return ゴールのビット列。呼び出し側で変更しないでください
+   */
+  public long[] getGoalBits(){
+    return goalBits;
+  }
+
+  /**
+   * ゴールの位置をマスのインデックスの昇順で返します
+   * @return ゴールのインデックス。呼び出し側で変更しないでください
+   */
+  public int[] getGoalIndices(){
+    return goalIndices;
+  }
+
   /**
    * ゴールの位置の一覧を返します
    * @return ゴールの位置を持ったHashMap
    */
   public HashSet<Point> getGoals(){
+    if(goals == null){
+      HashSet<Point> set = new HashSet<Point>();
+      for(int i=0;i<goalIndices.length;++i){
+        set.add(pointOf(goalIndices[i]));
+      }
+      goals = set;
+    }
     return goals;
   }
 
@@ -154,4 +656,121 @@ public class Map{
   public int getWidth(){
     return width;
   }
+  
+  /**
+   * 座標をマスのインデックス（y*幅+x）に変換します
+   * @param p 変換する座標
+   * @return マスのインデックス
+   */
+  public int indexOf(Point p){
+    return p.y*width + p.x;
+  }
+  
+  /**
+   * あるマスにある荷物を、あるゴールまで押す回数の最小値を返します。荷物同士の干渉は考慮しません
+   * @param index 荷物のあるマスのインデックス
+   * @param goal ゴールの番号（getGoalIndicesの添字）
+   * @return 押す回数。押していけない場合はUNREACHABLE
+   */
+  public int getPushDistance(int index, int goal){
+    return getPushDistanceTable()[index * goalIndices.length + goal];
+  }
+  
+  /**
+   * 全てのマスから全てのゴールまで押す回数の最小値の表を返します。<br>
+   * マスcellからgetGoalIndicesのg番目のゴールまでの押す回数がcell*ゴール数+gに格納されています。
+   * 表は最初に呼ばれたときに計算され、同じ地形のマップの間で共有されます
+   * @return 押す回数の表。呼び出し側で変更しないでください
+   */
+  public int[] getPushDistanceTable(){
+    int[] table = pushDistances;
+    if(table != null) return table;
+    synchronized(distanceCache){
+      table = distanceCache.get(this);
+      if(table == null){
+        table = findPushDistances();
+        distanceCache.put(this, table);
+      }
+    }
+    pushDistances = table;
+    return table;
+  }
+  
+  /**
+   * 盤面を自分自身に重ねる回転と鏡映（恒等変換を除く）を返します。
+   * 対称な盤面では、ある状態を変換した状態もゴールまでの押す回数が同じになります
+   * @return 自己同型ごとの、マスのインデックスの移動先の配列。対称でない盤面では長さ0。呼び出し側で変更しないでください
+   */
+  public int[][] getAutomorphisms(){
+    return automorphisms;
+  }
+
+  /**
+   * 荷物を方向dに押して通すとき、マスがトンネル（押す方向と直交する両側が壁）かどうかを返します
+   * @param index マスのインデックス
+   * @param d 荷物を押す方向（上下左右のいずれか）
+   * @return トンネルかどうか
+   */
+  public boolean isTunnel(int index, Direction d){
+    return tunnels[d == Direction.North || d == Direction.South ? 0 : 1][index];
+  }
+
+  /**
+   * ゴール部屋の一覧を返します。一覧は最初に呼ばれたときに求めます
+   * @return ゴール部屋の一覧。呼び出し側で変更しないでください
+   */
+  public GoalRoom[] getGoalRooms(){
+    GoalRoom[] rooms = goalRooms;
+    if(rooms == null){
+      rooms = findGoalRooms();
+      goalRooms = rooms;
+    }
+    return rooms;
+  }
+
+  /**
+   * 指定したマスがデッドスクエア（荷物を置くとどのゴールにも運べなくなるマス）かどうかを返します。<br>
+   * 壁のマスもデッドスクエアとして扱います
+   * @param index マスのインデックス
+   * @return デッドスクエアかどうか
+   */
+  public boolean isDeadSquare(int index){
+    return deadSquares[index];
+  }
+  
+  /**
+   * 指定したマスがゴールかどうかを返します
+   * @param index マスのインデックス
+   * @return ゴールかどうか
+   */
+  public boolean isGoal(int index){
+    return cells[index] == GOAL;
+  }
+  
+  /**
+   * マスのインデックスをDirectionの方向に動かしたインデックスを返します
+   * @param index 元のマスのインデックス
+   * @param d 動かしたいDirection
+   * @return 動いた後のマスのインデックス。マップ外に出る場合は-1
+   */
+  public int moveIndex(int index, Direction d){
+    return neighbors[d.ordinal()][index];
+  }
+  
+  /**
+   * マスのインデックスを座標に変換します
+   * @param index マスのインデックス
+   * @return 座標
+   */
+  public Point pointOf(int index){
+    return new Point(index % width, index / width);
+  }
+  
+  /**
+   * マス目の数だけのビットを格納するのに必要なlongの個数を返します
+   * @return ビット列の長さ
+   */
+  public int wordCount(){
+    return (width*height + 63) >> 6;
+  }
 }
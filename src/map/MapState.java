@@ -4,19 +4,22 @@
 package map;
 
 import java.awt.Point;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 
 import util.Direction;
 
 /**
- * 現在の荷物とキャラの位置を管理するクラスです
+ * 現在の荷物とキャラの位置を管理するクラスです。<br>
+ * 荷物の位置はマスのインデックス（y*幅+x）をビット位置としたビット列、キャラクターの位置はマスのインデックスで保持します
  * @author giginet
  */
 public class MapState{
-  private Point chara = null;
-  private HashSet<Point> loads = null;
+  private int chara = 0;
+  private long hash = 0;
+  private int loadCount = 0;
+  private long[] loads = null;
   private Map map = null;
   
   /**
@@ -27,16 +30,63 @@ public class MapState{
    * @throws IllegalArgumentException
    */
   public MapState(Map map, Point chara, HashSet<Point> loads) throws IllegalArgumentException{
+    this.map = map;
+    this.chara = map.indexOf(chara);
+    this.loads = new long[map.wordCount()];
+    Iterator<Point> itr = loads.iterator();
+    while(itr.hasNext()){
+      int index = map.indexOf(itr.next());
+      this.loads[index >> 6] |= 1L << index;
+    }
+    this.loadCount = loads.size();
+    // ゴールの数と荷物の数を比べる
+    if(this.map.getGoals().size() != this.loadCount){
+      throw new IllegalArgumentException("荷物とゴールの数が一致している必要があります");
+    }
+    if(loads.contains(chara)){
+      throw new IllegalArgumentException("荷物とキャラクターは同じ座標には配置できません");
+    }
+    this.hash = calcHash();
+  }
+  
+  /**
+   * コンストラクタ。マップデータ、キャラの位置、荷物の位置のビット列から現在のマップの状態を生成します
+   * @param map マップデータ
+   * @param chara キャラクターの位置のインデックス
+   * @param loads 荷物の位置のビット列。このインスタンスが保持するので、呼び出し側で変更しないでください
+   * @throws IllegalArgumentException
+   */
+  public MapState(Map map, int chara, long[] loads) throws IllegalArgumentException{
     this.map = map;
     this.chara = chara;
     this.loads = loads;
+    for(int i=0;i<loads.length;++i){
+      this.loadCount += Long.bitCount(loads[i]);
+    }
     // ゴールの数と荷物の数を比べる
-    if(this.map.getGoals().size() != this.loads.size()){
+    if(this.map.getGoalIndices().length != this.loadCount){
       throw new IllegalArgumentException("荷物とゴールの数が一致している必要があります");
     }
-    if(loads.contains(this.chara)){
+    if(hasLoad(chara)){
       throw new IllegalArgumentException("荷物とキャラクターは同じ座標には配置できません");
     }
+    this.hash = calcHash();
+  }
+  
+  /**
+   * コピー用のコンストラクタ。ハッシュ値を再計算せずに引き継ぎます
+   * @param map マップデータ
+   * @param chara キャラクターの位置のインデックス
+   * @param loads 荷物の位置のビット列
+   * @param loadCount 荷物の数
+   * @param hash 引き継ぐハッシュ値
+   */
+  private MapState(Map map, int chara, long[] loads, int loadCount, long hash){
+    this.map = map;
+    this.chara = chara;
+    this.loads = loads;
+    this.loadCount = loadCount;
+    this.hash = hash;
   }
   
   /**
@@ -63,61 +113,72 @@ public class MapState{
    * </ul>
    */
   static public MapState parse(String str) throws IllegalArgumentException{
-    String chars[] = str.split("");
-    HashMap<Point, Chip> map = new HashMap<Point, Chip>();
-    Point chara = null;
-    HashSet<Point> loads = new HashSet<Point>();
+    byte cells[] = new byte[str.length()];
+    int chara = -1;
+    int loads[] = new int[str.length()];
+    int loadCount = 0;
     int goalCount = 0;
-    for(int i=0, x=0, y=0;i<chars.length;++i){
-      String c = chars[i];
-      if(c.equals("\n")){
+    int width = -1;
+    int size = 0;
+    for(int i=0, x=0;i<str.length();++i){
+      char c = str.charAt(i);
+      if(c == '\n'){
+        if(width == -1) width = x;
+        if(x != width) throw new IllegalArgumentException("渡されたマップのサイズが不正です");
         x = 0;
-        ++y;
         continue;
       }
-      Point p = new Point(x, y);
-      if(c.equals(".")){
-        map.put(p, new Floor(p));
-      }else if(c.equals("#")){
-        map.put(p, new Wall(p));
-      }else if(c.equals("*")){
-        loads.add(p);
-        map.put(p, new Floor(p));
-      }else if(c.equals("@") || c.equals("a")){
-        if(chara==null){
-          map.put(p, new Floor(p));
-          chara = p;
-          if(c.equals("a")){
-            map.put(p, new Goal(p));
+      if(c == '.'){
+        cells[size] = Map.FLOOR;
+      }else if(c == '#'){
+        cells[size] = Map.WALL;
+      }else if(c == '*'){
+        loads[loadCount++] = size;
+        cells[size] = Map.FLOOR;
+      }else if(c == '@' || c == 'a'){
+        if(chara==-1){
+          cells[size] = Map.FLOOR;
+          chara = size;
+          if(c == 'a'){
+            cells[size] = Map.GOAL;
             ++goalCount;
           }
         }else{
           throw new IllegalArgumentException("キャラクターは1カ所にしか設置できません");
         }
-      }else if(c.equals("G")){
-        map.put(p, new Goal(p));
+      }else if(c == 'G'){
+        cells[size] = Map.GOAL;
         ++goalCount;
-      }else if(c.equals("+")){
-        map.put(p, new Goal(p));
-        loads.add((Point)p.clone());
+      }else if(c == '+'){
+        cells[size] = Map.GOAL;
+        loads[loadCount++] = size;
         ++goalCount;
-      }else if(c.equals("")){
+      }else if(c == '\r'){
         continue;
       }else{
         throw new IllegalArgumentException("不正な文字\"" + c + "\"が含まれています");
       }
       ++x;
+      ++size;
     }
-    if(chara == null){
+    if(chara == -1){
       throw new IllegalArgumentException("キャラクターを設置する必要があります");
     }
-    if(loads.isEmpty()){
+    if(loadCount == 0){
       throw new IllegalArgumentException("荷物を１つは設置する必要があります");
-    }else if(loads.size() != goalCount){
+    }else if(loadCount != goalCount){
       throw new IllegalArgumentException("荷物とゴールの数が一致している必要があります");
     }
-    Map newMap = new Map(map);
-    return new MapState(newMap, chara, loads);
+    if(width <= 0) width = size;
+    if(size % width != 0){
+      throw new IllegalArgumentException("渡されたマップのサイズが不正です");
+    }
+    Map newMap = new Map(Arrays.copyOf(cells, size), width, size / width);
+    long bits[] = new long[newMap.wordCount()];
+    for(int i=0;i<loadCount;++i){
+      bits[loads[i] >> 6] |= 1L << loads[i];
+    }
+    return new MapState(newMap, chara, bits);
   }
   
   /**
@@ -127,17 +188,19 @@ public class MapState{
    * @return この物体を動かせるかどうか
    */
   public boolean canMove(Point obj, Direction d){
-    switch(d){
-    case North:
-      return canThrough(new Point(obj.x, obj.y-1));
-    case East:
-      return canThrough(new Point(obj.x+1, obj.y));
-    case South:
-      return canThrough(new Point(obj.x, obj.y+1));
-    case West:
-      return canThrough(new Point(obj.x-1, obj.y));
-    }
-    return false;
+    if(!isInside(obj)) return false;
+    return canMove(map.indexOf(obj), d);
+  }
+  
+  /**
+   * ある荷物、またはキャラクターを指定した方向に動かせるかどうかを返します
+   * @param obj 動かす物体のあるマスのインデックス
+   * @param d 物体を動かす方向
+   * @return この物体を動かせるかどうか
+   */
+  public boolean canMove(int obj, Direction d){
+    if(d != Direction.North && d != Direction.East && d != Direction.South && d != Direction.West) return false;
+    return canThrough(map.moveIndex(obj, d));
   }
   
   /**
@@ -147,8 +210,8 @@ public class MapState{
    */
   public boolean canMoveChara(Direction d){
     if(d == Direction.SouthEast || d == Direction.NorthEast || d == Direction.SouthWest || d == Direction.NorthWest) return false;
-    Point next = Map.movePoint(this.chara, d);
-    return canMove(this.chara, d) || (this.hasLoads(next) && canMove(next, d));
+    int next = map.moveIndex(this.chara, d);
+    return canMove(this.chara, d) || (this.hasLoad(next) && canMove(next, d));
   }
   
   /**
@@ -157,7 +220,16 @@ public class MapState{
    * @return 進入可能かどうか
    */
   public boolean canThrough(Point p){
-    return 0 <= p.x && p.x < map.getWidth() && 0 <= p.y && p.y < map.getHeight() && map.getChipAt(p).canThrough() && !loads.contains(p);
+    return isInside(p) && canThrough(map.indexOf(p));
+  }
+  
+  /**
+   * あるマスに荷物やキャラが進入可能かどうかを返します
+   * @param index 調べるマスのインデックス。マップ外の場合は-1
+   * @return 進入可能かどうか
+   */
+  public boolean canThrough(int index){
+    return index >= 0 && map.canThrough(index) && !hasLoad(index);
   }
   
   /**
@@ -187,46 +259,89 @@ public class MapState{
     if(getClass() != obj.getClass())
       return false;
     MapState other = (MapState) obj;
-    if(chara == null){
-      if(other.chara != null)
-        return false;
-    }else if(!chara.equals(other.chara))
+    if(hash != other.hash || chara != other.chara)
       return false;
-    if(loads == null){
-      if(other.loads != null)
-        return false;
-    }else if(!loads.equals(other.loads))
+    if(!Arrays.equals(loads, other.loads))
       return false;
     if(map == null){
       if(other.map != null)
         return false;
-    }else if(!map.equals(other.map))
+    }else if(map != other.map && !map.equals(other.map))
       return false;
     return true;
   }
 
+  /**
+   * この状態の64bitのZobristハッシュ値を返します。<br>
+   * 荷物とキャラクターの配置が同じ状態は同じ値を返します
+   * @return ハッシュ値
+   */
+  public long getHash(){
+    return hash;
+  }
+  
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode(){
+    return (int)(hash ^ (hash >>> 32));
+  }
+
   /**
    * 現在のキャラクターの位置を返します
    * @return キャラクターの位置
    */
   public Point getChara(){
+    return map.pointOf(chara);
+  }
+  
+  /**
+   * 現在のキャラクターの位置をマスのインデックスで返します
+   * @return キャラクターの位置のインデックス
+   */
+  public int getCharaIndex(){
     return chara;
   }
 
   /**
-   * 現在の荷物の一覧を返します
-   * @return 荷物の場所を格納したHashMap
+   * 現在の荷物の一覧を返します。返されるのはコピーです
+   * @return 荷物の場所を格納したHashSet
    */
   public HashSet<Point> getLoads(){
-    return loads;
+    HashSet<Point> result = new HashSet<Point>();
+    for(int index = nextLoad(0); index >= 0; index = nextLoad(index + 1)){
+      result.add(map.pointOf(index));
+    }
+    return result;
+  }
+  
+  /**
+   * 現在の荷物の位置をマスのインデックスの昇順に並べた配列で返します
+   * @return 荷物の位置のインデックス
+   */
+  public int[] getLoadIndices(){
+    int[] result = new int[loadCount];
+    for(int i = 0, index = nextLoad(0); index >= 0; ++i, index = nextLoad(index + 1)){
+      result[i] = index;
+    }
+    return result;
   }
   
+  /**
+   * 現在の荷物の位置のビット列を返します
+   * @return 荷物の位置のビット列。呼び出し側で変更しないでください
+   */
+  public long[] getLoadBits(){
+    return loads;
+  }
+
   /**
    * マップ内に存在する荷物の数を返します
    * @return 荷物の数
    */
   public int getLoadsCount(){
-    return loads.size();
+    return loadCount;
   }
  
   /**
@@ -243,7 +358,16 @@ public class MapState{
    * @return 荷物があるかどうか
    */
   public boolean hasLoads(Point p){
-    return loads.contains(p);
+    return isInside(p) && hasLoad(map.indexOf(p));
+  }
+  
+  /**
+   * 渡されたマスに荷物があるかどうかを返します
+   * @param index 調べるマスのインデックス。マップ外の場合は-1
+   * @return 荷物があるかどうか
+   */
+  public boolean hasLoad(int index){
+    return index >= 0 && (loads[index >> 6] & (1L << index)) != 0;
   }
 
   /**
@@ -251,10 +375,9 @@ public class MapState{
    * @return このマップが探索終了状態かどうか
    */
   public boolean isGoal(){
-    Iterator<Point> itr = loads.iterator();
-    while(itr.hasNext()){
-      Point p = itr.next();
-      if(!map.getChipAt(p).isGoal()) return false;
+    long[] goals = map.getGoalBits();
+    for(int i=0;i<loads.length;++i){
+      if((loads[i] & ~goals[i]) != 0) return false;
     }
     return true;
   }
@@ -267,27 +390,59 @@ public class MapState{
    * @return キャラクターを動かした後の新しいマップ。動かせない場合は自分自身
    */
   public MapState moveChara(Direction d){
-    try{
-      MapState newState = (MapState)this.clone();
-      Point next = Map.movePoint(newState.chara, d);
-      if(this.hasLoads(next)){
-        // 移動先に荷物があった場合
-        // その荷物をさらにdに移動できなかった場合、自分自身を返す
-        if(!canMove(next, d)) return this;
-        // 移動できる場合、荷物とキャラを同時に動かす
-        newState = newState.moveLoad((Point)next.clone(), d);
-        newState.chara = (Point)next.clone();
-        return newState;
-      }else{
-        // 移動先に荷物がなかった場合
-        if(!canMove(chara, d)) return this;
-        newState.chara = next;
-        return newState;
-      }
-    }catch(CloneNotSupportedException e){
-      e.printStackTrace();
-      return this;
+    if(!canMoveChara(d)) return this;
+    int next = map.moveIndex(chara, d);
+    MapState newState = copy();
+    if(this.hasLoad(next)){
+      // 移動先に荷物があった場合、荷物とキャラを同時に動かす
+      newState.pushLoad(next, map.moveIndex(next, d));
     }
+    newState.setChara(next);
+    return newState;
+  }
+
+  /**
+   * キャラクターを指定したマスへ移動します。経路があるかどうかは調べません。<br>
+   * この状態自身を書き換えるので、探索中に共有されている状態に対しては呼び出さないでください
+   * @param index 移動先のマスのインデックス
+   */
+  public void moveCharaTo(int index){
+    setChara(index);
+  }
+  
+  /**
+   * ある荷物を指定した方向に押したときの状態を返します。キャラクターは荷物のあった位置に移動します。<br>
+   * 押せるかどうか（キャラクターが荷物の裏側に到達できるか、押した先が空いているか）は呼び出し側で確認してください
+   * @param load 押す荷物のあるマスのインデックス
+   * @param d 荷物を押す方向
+   * @return 荷物を押した後の新しいマップ
+   */
+  public MapState push(int load, Direction d){
+    MapState newState = copy();
+    newState.makePush(load, d);
+    return newState;
+  }
+  
+  /**
+   * ある荷物を指定した方向に押します。キャラクターは荷物のあった位置に移動します。<br>
+   * pushと違い、この状態自身を書き換えます。元に戻すときはunmakePushを呼んでください
+   * @param load 押す荷物のあるマスのインデックス
+   * @param d 荷物を押す方向
+   */
+  public void makePush(int load, Direction d){
+    pushLoad(load, map.moveIndex(load, d));
+    setChara(load);
+  }
+  
+  /**
+   * makePushで押した荷物を元の位置に戻し、キャラクターを押す前の位置に戻します
+   * @param load 押す前に荷物があったマスのインデックス
+   * @param d 荷物を押した方向
+   * @param chara 押す前のキャラクターの位置のインデックス
+   */
+  public void unmakePush(int load, Direction d, int chara){
+    pushLoad(map.moveIndex(load, d), load);
+    setChara(chara);
   }
 
   /**
@@ -297,15 +452,27 @@ public class MapState{
    * @return 荷物を動かした後の新しいマップ。動かせない場合は自分自身
    */
   public MapState moveLoad(Point load, Direction d){
-    if(!canMove(load, d) || !this.loads.contains(load)) return this;
-    try{
-      MapState newState = (MapState)this.clone();
-      newState.loads.remove(load);
-      newState.loads.add(Map.movePoint(load, d));
-      return newState;
-    }catch(CloneNotSupportedException e){
-      e.printStackTrace();
-      return this;
+    if(!isInside(load)) return this;
+    int index = map.indexOf(load);
+    if(!canMove(index, d) || !hasLoad(index)) return this;
+    MapState newState = copy();
+    newState.pushLoad(index, map.moveIndex(index, d));
+    return newState;
+  }
+  
+  /**
+   * 指定したインデックス以降で最初に荷物があるマスを返します
+   * @param from 検索を始めるマスのインデックス
+   * @return 荷物があるマスのインデックス。見つからない場合は-1
+   */
+  public int nextLoad(int from){
+    int word = from >> 6;
+    if(word >= loads.length) return -1;
+    long bits = loads[word] & (-1L << from);
+    while(true){
+      if(bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+      if(++word == loads.length) return -1;
+      bits = loads[word];
     }
   }
   
@@ -314,35 +481,25 @@ public class MapState{
    */
   @Override
   public String toString(){
-    String result = "";
-    for(int y=0;y<map.getHeight();++y){
-      for(int x=0;x<map.getWidth();++x){
-        Point p = new Point(x, y);
-        Chip c = this.map.getChipAt(p);
-        if(c.getClass() == Wall.class){
-          result += c.toString();
-        }else if(c.getClass() == Goal.class){
-          if(p.equals(chara)){
-            result += "a";
-          }else if(loads.contains(p)){
-            result += "+";
-          }else{
-            result += c.toString();
-          }
-        }else if(c.getClass() == Floor.class){
-          if(p.equals(chara)){
-            result += "@";
-          }else if(loads.contains(p)){
-            result += "*";
-          }else{
-            result += c.toString();
-          }
+    StringBuilder result = new StringBuilder();
+    for(int y=0, index=0;y<map.getHeight();++y){
+      for(int x=0;x<map.getWidth();++x, ++index){
+        switch(map.getCellType(index)){
+        case Map.WALL:
+          result.append('#');
+          break;
+        case Map.GOAL:
+          result.append(index == chara ? 'a' : hasLoad(index) ? '+' : 'G');
+          break;
+        default:
+          result.append(index == chara ? '@' : hasLoad(index) ? '*' : '.');
+          break;
         }
       }
-      result += "\n";
+      result.append('\n');
     }
-    result = result.substring(0, result.length()-1); // 行末の\nを削除
-    return result;
+    result.setLength(result.length()-1); // 行末の\nを削除
+    return result.toString();
   }
 
   /**
@@ -350,13 +507,56 @@ public class MapState{
    */
   @Override
   protected Object clone() throws CloneNotSupportedException{
-    HashSet<Point> newLoads = new HashSet<Point>();
-    Iterator<Point> itr = this.loads.iterator();
-    while(itr.hasNext()){
-      newLoads.add((Point)itr.next().clone());
+    return copy();
+  }
+  
+  /**
+   * 配置をコピーした新しい状態を返します
+   * @return コピーされた状態
+   */
+  private MapState copy(){
+    return new MapState(this.map, this.chara, this.loads.clone(), this.loadCount, this.hash);
+  }
+  
+  /**
+   * 現在の配置からZobristハッシュ値を計算します
+   * @return ハッシュ値
+   */
+  private long calcHash(){
+    long h = map.getCharaKey(chara);
+    for(int index = nextLoad(0); index >= 0; index = nextLoad(index + 1)){
+      h ^= map.getLoadKey(index);
     }
-    return new MapState(this.map, (Point)this.chara.clone(), newLoads);
+    return h;
+  }
+  
+  /**
+   * 座標がマップ内にあるかどうかを返します
+   * @param p 調べる座標
+   * @return マップ内かどうか
+   */
+  private boolean isInside(Point p){
+    return 0 <= p.x && p.x < map.getWidth() && 0 <= p.y && p.y < map.getHeight();
   }
   
+  /**
+   * 荷物をあるマスから別のマスへ移し、ハッシュ値を差分更新します
+   * @param from 荷物のあるマスのインデックス
+   * @param to 移動先のマスのインデックス
+   */
+  private void pushLoad(int from, int to){
+    loads[from >> 6] &= ~(1L << from);
+    loads[to >> 6] |= 1L << to;
+    hash ^= map.getLoadKey(from) ^ map.getLoadKey(to);
+  }
+  
+  /**
+   * キャラクターの位置を変更し、ハッシュ値を差分更新します
+   * @param next 新しいキャラクターの位置のインデックス
+   */
+  private void setChara(int next){
+    hash ^= map.getCharaKey(chara) ^ map.getCharaKey(next);
+    chara = next;
+  }
   
 }
@@ -0,0 +1,145 @@
+/**
+ * 
+ */
+package map;
+
+import util.Direction;
+
+/**
+ * 盤面の回転と鏡映（8通りの対称変換）を表すクラスです。<br>
+ * 変換は、必要なら縦横を入れ替え（転置）てから、横方向と縦方向をそれぞれ反転するものとして表します。
+ * 転置する変換では、変換後の盤面の幅と高さが入れ替わります
+ * @author giginet
+ *
+ */
+public class Symmetry{
+  /** 何もしない変換です */
+  static public final Symmetry IDENTITY = new Symmetry(false, false, false);
+  /** 全ての変換です。先頭は何もしない変換です */
+  static public final Symmetry[] ALL = {
+    IDENTITY,
+    new Symmetry(false, true, false),
+    new Symmetry(false, false, true),
+    new Symmetry(false, true, true),
+    new Symmetry(true, false, false),
+    new Symmetry(true, true, false),
+    new Symmetry(true, false, true),
+    new Symmetry(true, true, true)};
+  /** 各方向の横方向の移動量です（Directionの順） */
+  static private final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+  /** 各方向の縦方向の移動量です（Directionの順） */
+  static private final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+  static private final Direction[] DIRECTIONS = Direction.values();
+
+  private boolean flipX = false;
+  private boolean flipY = false;
+  private boolean transpose = false;
+
+  /**
+   * コンストラクタ
+   * @param transpose 縦横を入れ替えるかどうか
+   * @param flipX 入れ替えた後に横方向を反転するかどうか
+   * @param flipY 入れ替えた後に縦方向を反転するかどうか
+   */
+  private Symmetry(boolean transpose, boolean flipX, boolean flipY){
+    this.transpose = transpose;
+    this.flipX = flipX;
+    this.flipY = flipY;
+  }
+
+  /**
+   * 逆変換を返します
+   * @return 逆変換
+   */
+  public Symmetry inverse(){
+    // 転置する変換の逆変換は、反転する向きが入れ替わる
+    boolean x = transpose ? flipY : flipX, y = transpose ? flipX : flipY;
+    for(Symmetry s : ALL){
+      if(s.transpose == transpose && s.flipX == x && s.flipY == y) return s;
+    }
+    return null;
+  }
+
+  /**
+   * 変換後の盤面の幅を返します
+   * @param width 変換前の幅
+   * @param height 変換前の高さ
+   * @return 変換後の幅
+   */
+  public int getWidth(int width, int height){
+    return transpose ? height : width;
+  }
+
+  /**
+   * 変換後の盤面の高さを返します
+   * @param width 変換前の幅
+   * @param height 変換前の高さ
+   * @return 変換後の高さ
+   */
+  public int getHeight(int width, int height){
+    return transpose ? width : height;
+  }
+
+  /**
+   * マスのインデックスを変換します
+   * @param index 変換前の盤面でのマスのインデックス
+   * @param width 変換前の幅
+   * @param height 変換前の高さ
+   * @return 変換後の盤面でのマスのインデックス
+   */
+  public int transform(int index, int width, int height){
+    int x = index % width, y = index / width;
+    if(transpose){
+      int t = x;
+      x = y;
+      y = t;
+    }
+    int w = getWidth(width, height), h = getHeight(width, height);
+    if(flipX) x = w - 1 - x;
+    if(flipY) y = h - 1 - y;
+    return y * w + x;
+  }
+
+  /**
+   * 方向を変換します
+   * @param d 変換前の方向
+   * @return 変換後の方向
+   */
+  public Direction transform(Direction d){
+    int dx = DX[d.ordinal()], dy = DY[d.ordinal()];
+    if(transpose){
+      int t = dx;
+      dx = dy;
+      dy = t;
+    }
+    if(flipX) dx = -dx;
+    if(flipY) dy = -dy;
+    for(int i=0;i<DIRECTIONS.length;++i){
+      if(DX[i] == dx && DY[i] == dy) return DIRECTIONS[i];
+    }
+    return d;
+  }
+
+  /**
+   * 盤面を表す文字列を変換します。各行は\nで区切られ、全て同じ長さである必要があります
+   * @param text 盤面を表す文字列（MapState#toStringの形式）
+   * @return 変換後の盤面を表す文字列
+   */
+  public String transform(String text){
+    int width = text.indexOf('\n');
+    if(width < 0) width = text.length();
+    int height = (text.length() + 1) / (width + 1);
+    int w = getWidth(width, height), h = getHeight(width, height);
+    char[] result = new char[h * (w + 1) - 1];
+    for(int y=0;y<height;++y){
+      for(int x=0;x<width;++x){
+        int to = transform(y * width + x, width, height);
+        result[to / w * (w + 1) + to % w] = text.charAt(y * (width + 1) + x);
+      }
+    }
+    for(int y=0;y<h - 1;++y){
+      result[y * (w + 1) + w] = '\n';
+    }
+    return new String(result);
+  }
+}
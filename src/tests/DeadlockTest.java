@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package tests;
+
+import java.awt.Point;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import map.*;
+import deadlock.*;
+
+/**
+ * デッドロック判定用のテストケースクラスです
+ * @author giginet
+ *
+ */
+public class DeadlockTest{
+
+  static final String blockMap =
+      "######\n" +
+      "#.**.#\n" +
+      "#.@..#\n" +
+      "#GG..#\n" +
+      "######";
+  static final String cornerMap =
+      "######\n" +
+      "#*...#\n" +
+      "#.@*.#\n" +
+      "#GG..#\n" +
+      "######";
+  static final String corralMap =
+      "########\n" +
+      "#a..*..#\n" +
+      "########";
+  static final String openCorralMap =
+      "########\n" +
+      "#@..*.G#\n" +
+      "########";
+
+  /**
+   * 2×2の区画が埋まっているときの判定をテストします
+   */
+  @Test
+  public void blockTest(){
+    MapState state = MapState.parse(blockMap);
+    DeadlockDetector detector = new BlockDeadlockDetector();
+    assertTrue("壁と荷物で埋まっている", detector.isDeadlocked(state, index(state, 3, 1)));
+    MapState corner = MapState.parse(cornerMap);
+    assertFalse("開けた場所の荷物", detector.isDeadlocked(corner, index(corner, 3, 2)));
+  }
+
+  /**
+   * 凍結した荷物の判定をテストします
+   */
+  @Test
+  public void freezeTest(){
+    MapState state = MapState.parse(cornerMap);
+    DeadlockDetector detector = new FreezeDeadlockDetector();
+    assertTrue("隅の荷物は凍結している", detector.isDeadlocked(state, index(state, 1, 1)));
+    assertFalse("開けた場所の荷物は凍結していない", detector.isDeadlocked(state, index(state, 3, 2)));
+    MapState block = MapState.parse(blockMap);
+    assertTrue("壁際で並んだ荷物は凍結している", detector.isDeadlocked(block, index(block, 2, 1)));
+  }
+
+  /**
+   * コラルの判定をテストします
+   */
+  @Test
+  public void corralTest(){
+    DeadlockDetector detector = new CorralDeadlockDetector();
+    MapState state = MapState.parse(corralMap);
+    assertTrue("ゴールのないコラルに押し込むしかない", detector.isDeadlocked(state, index(state, 4, 1)));
+    assertFalse("凍結はしていない", new FreezeDeadlockDetector().isDeadlocked(state, index(state, 4, 1)));
+    MapState open = MapState.parse(openCorralMap);
+    assertFalse("コラルの中のゴールに押し込める", detector.isDeadlocked(open, index(open, 4, 1)));
+    assertTrue("標準のチェーンでも判定できる", DeadlockChain.createDefault().isDeadlocked(state, index(state, 4, 1)));
+  }
+
+  private int index(MapState state, int x, int y){
+    return state.getMap().indexOf(new Point(x, y));
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * 
+ */
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import map.*;
+import heuristic.*;
+import main.AStarEngine;
+import main.PushGenerator;
+import main.SearchBudget;
+import deadlock.DeadlockChain;
+import util.Hungarian;
+
+/**
+ * 見積もり用のテストケースクラスです
+ * @author giginet
+ *
+ */
+public class HeuristicTest{
+
+  /**
+   * ハンガリアン法で最小コストの割り当てが求められるかテストします
+   */
+  @Test
+  public void hungarianTest(){
+    Hungarian hungarian = new Hungarian(3);
+    int cost[] = {
+        4, 1, 3,
+        2, 0, 5,
+        3, 2, 2};
+    assertEquals("最小コスト", hungarian.solve(cost), 5);
+    assertEquals("0列目には1行目", hungarian.rowOf(0), 1);
+    assertEquals("1列目には0行目", hungarian.rowOf(1), 0);
+    assertEquals("2列目には2行目", hungarian.rowOf(2), 2);
+    int impossible[] = {
+        Hungarian.INFINITY, 1,
+        Hungarian.INFINITY, 2};
+    assertEquals("割り当てられない", new Hungarian(2).solve(impossible), Hungarian.INFINITY);
+  }
+
+  /**
+   * 1行だけコストを変えて解き直した結果が、最初から解いた結果と一致するかテストします
+   */
+  @Test
+  public void hungarianRepairTest(){
+    Random random = new Random(0);
+    int n = 6;
+    Hungarian base = new Hungarian(n);
+    Hungarian repaired = new Hungarian(n);
+    Hungarian fresh = new Hungarian(n);
+    for(int trial=0;trial<100;++trial){
+      int table[] = new int[(n + 1) * n];
+      for(int i=0;i<table.length;++i){
+        table[i] = random.nextInt(8) == 0 ? Hungarian.INFINITY : random.nextInt(20);
+      }
+      int offsets[] = new int[n];
+      for(int i=0;i<n;++i){
+        offsets[i] = i * n;
+      }
+      base.solve(table, offsets);
+      int row = random.nextInt(n);
+      offsets[row] = n * n; // 予備の行に差し替える
+      repaired.copyFrom(base);
+      assertEquals("解き直した結果が一致する", repaired.repair(table, offsets, row), fresh.solve(table, offsets));
+    }
+  }
+
+  /**
+   * 子の状態の差分による見積もりが、最初から見積もった結果と一致するかテストします
+   */
+  @Test
+  public void incrementalTest(){
+    MapState state = MapState.parse(MapTest.testMap);
+    PushGenerator generator = new PushGenerator(state.getMap());
+    int pushes[] = new int[state.getLoadsCount() * 4];
+    IncrementalHeuristic heuristic = new AssignmentHeuristic(state.getMap());
+    Heuristic fresh = new AssignmentHeuristic(state.getMap());
+    assertEquals("親の見積もり", heuristic.prepare(state), fresh.estimate(state));
+    int count = generator.generate(state, pushes);
+    assertTrue("押せる荷物がある", count > 0);
+    int chara = state.getCharaIndex();
+    for(int i=0;i<count;++i){
+      // 探索エンジンと同じく、親の状態をその場で書き換えてから見積もる
+      int to = generator.destinationOf(pushes[i]);
+      generator.make(state, pushes[i]);
+      int estimate = heuristic.estimateChild(state, PushGenerator.loadOf(pushes[i]), to);
+      assertEquals("子の見積もり", estimate, fresh.estimate(state));
+      generator.unmake(state, pushes[i], chara);
+    }
+  }
+
+  /**
+   * 割り当てによる見積もりが許容的かどうかテストします
+   */
+  @Test
+  public void assignmentTest(){
+    MapState state = MapState.parse(MapTest.testMap);
+    Heuristic heuristic = new AssignmentHeuristic(state.getMap());
+    int estimate = heuristic.estimate(state);
+    assertTrue("ゴールではないので正の値", estimate > 0);
+    assertTrue("最短の13回を超えない", estimate <= 13);
+    assertEquals("ゴールでは0", heuristic.estimate(MapState.parse(MapTest.testMap9)), 0);
+  }
+
+  /**
+   * パターンデータベースの見積もりが最短手順の残りの押す回数を超えないか、保存した表を作り直さずに読み込むかテストします
+   */
+  @Test
+  public void patternDatabaseTest() throws IOException{
+    MapState state = MapState.parse(MapTest.testMap);
+    File directory = File.createTempFile("pdb", "");
+    assertTrue("一時ディレクトリを作る", directory.delete() && directory.mkdir());
+    try{
+      PatternDatabase database = PatternDatabase.load(state.getMap(), directory);
+      File[] files = directory.listFiles();
+      assertEquals("表を1つ保存する", files.length, 1);
+      long modified = files[0].lastModified();
+      assertEquals("ゴールを2つずつに分ける", database.getPattern(0).length, 2);
+      PatternDatabase loaded = PatternDatabase.load(state.getMap(), directory);
+      assertEquals("作り直さない", directory.listFiles().length, 1);
+      assertEquals("作り直さない", files[0].lastModified(), modified);
+      List<Integer> pushes = new AStarEngine(DeadlockChain.createDefault()).search(state, new SearchBudget());
+      List<MapState> states = new PushGenerator(state.getMap()).replay(state, pushes);
+      Heuristic additive = new PatternDatabaseHeuristic(state.getMap(), loaded, true);
+      Heuristic max = new PatternDatabaseHeuristic(state.getMap(), loaded, false);
+      Heuristic assignment = new AssignmentHeuristic(state.getMap());
+      int[] work = new int[state.getLoadsCount()];
+      // 1歩ごとの状態を、荷物を押すたびに減る残りの押す回数と比べる
+      int remaining = pushes.size();
+      for(int i=0;i<states.size();++i){
+        if(i > 0 && !Arrays.equals(states.get(i).getLoadBits(), states.get(i - 1).getLoadBits())) --remaining;
+        MapState current = states.get(i);
+        assertTrue("足し合わせても許容的", database.estimate(current, work, true) <= remaining);
+        assertTrue("割り当て以上", additive.estimate(current) >= assignment.estimate(current));
+        assertTrue("許容的", additive.estimate(current) <= remaining);
+        assertTrue("最大値は和以下", max.estimate(current) <= additive.estimate(current));
+      }
+      assertEquals("ゴールでは0", remaining, 0);
+      // 中断を要求した予算では、表を作らずに打ち切る
+      File other = new File(directory, "cancelled");
+      SearchBudget budget = new SearchBudget();
+      budget.start();
+      budget.cancel();
+      assertNull("打ち切る", PatternDatabase.load(state.getMap(), PatternDatabase.DEFAULT_SIZE, other, budget));
+      assertEquals("表は保存しない", other.listFiles().length, 0);
+      other.delete();
+    }finally{
+      for(File file : directory.listFiles()) file.delete();
+      directory.delete();
+    }
+  }
+}
@@ -5,6 +5,7 @@ package tests;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import static org.junit.Assert.*;
 
@@ -209,6 +210,20 @@ public class MapTest{
     assertEquals("何もないところへ移動できる", moved.toString(), MapTest.testMap2);
   }
   
+  /**
+   * 荷物を押す操作をテストします。キャラクターは荷物のあった位置に移動します
+   */
+  @Test
+  public void pushTest(){
+    MapState map7 = MapState.parse(MapTest.testMap7);
+    Map m = map7.getMap();
+    MapState pushed = map7.push(m.indexOf(new Point(6, 3)), Direction.East);
+    assertEquals("荷物を押せる", pushed.toString(), MapTest.testMap8);
+    assertEquals("歩いて押したときと同じ状態", pushed, map7.moveChara(Direction.East));
+    assertEquals("逆向き", Direction.East.reverse(), Direction.West);
+    assertEquals("逆向き", Direction.NorthEast.reverse(), Direction.SouthWest);
+  }
+  
   /**
    * 探索終了状態かテストします
    */
@@ -229,6 +244,138 @@ public class MapTest{
     set.add(map);
     assertEquals("大きさが1", set.size(), 1);
     assertTrue("含まれている", set.contains(map2));
+    HashSet<MapState> hashSet = new HashSet<MapState>();
+    hashSet.add(map);
+    assertTrue("HashSetにも含まれている", hashSet.contains(map2));
+    assertFalse("移動後の状態は含まれていない", hashSet.contains(map2.moveChara(Direction.West)));
+  }
+  
+  /**
+   * マスのインデックスによる荷物とキャラクターの位置の取得をテストします
+   */
+  @Test
+  public void indexTest(){
+    Map m = map.getMap();
+    assertEquals("キャラクターの位置", map.getCharaIndex(), m.indexOf(new Point(2, 3)));
+    assertEquals("座標に戻せる", m.pointOf(map.getCharaIndex()), new Point(2, 3));
+    int loads[] = map.getLoadIndices();
+    assertEquals("荷物の数", loads.length, 3);
+    assertEquals("インデックス順に並ぶ", loads[0], m.indexOf(new Point(4, 2)));
+    assertEquals("インデックス順に並ぶ", loads[1], m.indexOf(new Point(6, 3)));
+    assertEquals("インデックス順に並ぶ", loads[2], m.indexOf(new Point(2, 4)));
+    assertTrue("荷物がある", map.hasLoad(loads[1]));
+    assertFalse("荷物がない", map.hasLoad(map.getCharaIndex()));
+    assertFalse("マップ外には荷物がない", map.hasLoad(-1));
+    assertEquals("Pointの一覧と一致する", map.getLoads().size(), 3);
+    assertTrue("Pointの一覧と一致する", map.getLoads().contains(new Point(6, 3)));
+  }
+  
+  /**
+   * マスの種類と隣接マスの表をテストします
+   */
+  @Test
+  public void gridTest(){
+    Map m = map.getMap();
+    int index = m.indexOf(new Point(1, 1));
+    assertEquals("1, 1は床である", m.getCellType(index), Map.FLOOR);
+    assertEquals("3, 4はゴールである", m.getCellType(m.indexOf(new Point(3, 4))), Map.GOAL);
+    assertEquals("0, 0は壁である", m.getCellType(0), Map.WALL);
+    assertEquals("東隣", m.moveIndex(index, Direction.East), m.indexOf(new Point(2, 1)));
+    assertEquals("南隣", m.moveIndex(index, Direction.South), m.indexOf(new Point(1, 2)));
+    assertEquals("マップ外は-1", m.moveIndex(0, Direction.North), -1);
+    assertEquals("マップ外は-1", m.moveIndex(0, Direction.West), -1);
+    assertEquals("マスはインデックスから生成される", m.getChipAt(new Point(3, 4)).getClass(), Goal.class);
+    assertNull("マップ外のマスはない", m.getChipAt(new Point(-1, 100)));
+    assertEquals("同じ地形のマップは等しい", m, MapState.parse(MapTest.testMap2).getMap());
+    assertFalse("違う地形のマップは等しくない", m.equals(MapState.parse(MapTest.testMap3).getMap()));
+  }
+  
+  /**
+   * デッドスクエアの判定をテストします
+   */
+  @Test
+  public void deadSquareTest(){
+    Map m = map.getMap();
+    assertTrue("隅はデッドスクエア", m.isDeadSquare(m.indexOf(new Point(1, 1))));
+    assertTrue("隅はデッドスクエア", m.isDeadSquare(m.indexOf(new Point(7, 1))));
+    assertTrue("ゴールのない壁際はデッドスクエア", m.isDeadSquare(m.indexOf(new Point(1, 3))));
+    assertTrue("壁はデッドスクエア", m.isDeadSquare(0));
+    assertFalse("ゴールはデッドスクエアではない", m.isDeadSquare(m.indexOf(new Point(3, 4))));
+    assertFalse("ゴールまで押せるマス", m.isDeadSquare(m.indexOf(new Point(4, 3))));
+    assertFalse("ゴールまで押せるマス", m.isDeadSquare(m.indexOf(new Point(6, 3))));
+  }
+  
+  /**
+   * ゴールまで押す回数の表をテストします
+   */
+  @Test
+  public void pushDistanceTest(){
+    Map m = map.getMap();
+    int goals[] = m.getGoalIndices();
+    assertEquals("ゴール上では0", m.getPushDistance(goals[0], 0), 0);
+    assertEquals("真上から1回", m.getPushDistance(m.indexOf(new Point(4, 3)), 1), 1);
+    assertEquals("真上に壁があると回り込む", m.getPushDistance(m.indexOf(new Point(3, 3)), 0), 3);
+    assertEquals("デッドスクエアからは押せない", m.getPushDistance(m.indexOf(new Point(1, 1)), 0), Map.UNREACHABLE);
+    assertSame("同じ地形のマップは表を共有する", m.getPushDistanceTable(), MapState.parse(MapTest.testMap2).getMap().getPushDistanceTable());
+  }
+  
+  /**
+   * 移動時に差分更新したハッシュ値が、同じ配置をパースしたときと一致するかテストします
+   */
+  @Test
+  public void hashTest(){
+    MapState map2 = MapState.parse(MapTest.testMap);
+    assertEquals("同じ配置のハッシュ値は同じ", map.getHash(), map2.getHash());
+    assertEquals("hashCodeも同じ", map.hashCode(), map2.hashCode());
+    assertEquals("キャラクターの移動後", map.moveChara(Direction.West).getHash(), MapState.parse(MapTest.testMap4).getHash());
+    MapState map7 = MapState.parse(MapTest.testMap7);
+    assertEquals("荷物の移動後", map7.moveChara(Direction.East).getHash(), MapState.parse(MapTest.testMap8).getHash());
+    assertEquals("荷物のみの移動後", map.moveLoad(new Point(4, 2), Direction.North).getHash(), MapState.parse(MapTest.testMap2).getHash());
+    assertFalse("違う配置のハッシュ値は違う", map.getHash() == MapState.parse(MapTest.testMap2).getHash());
+  }
+  
+  /**
+   * XSB形式と独自形式の問題集を読み込めるかテストします
+   */
+  @Test
+  public void levelReaderTest() throws Exception{
+    String collection =
+        "; first\n" +
+        "\n" +
+        "#########\n" +
+        "#       #\n" +
+        "# ##$## #\n" +
+        "# @   $ #\n" +
+        "##$... # #\n" +
+        "##    # #\n" +
+        "####  ###\n" +
+        "#########\n" +
+        "Title: XSB\n" +
+        "Author: someone\n" +
+        "\n" + testMap + "\n";
+    LevelReader reader = new LevelReader(java.nio.ByteBuffer.wrap(collection.getBytes("UTF-8")), "test");
+    Level xsb = reader.next();
+    assertEquals("Title:の題名", xsb.getTitle(), "XSB");
+    Level custom = reader.next();
+    assertEquals("題名が無い問題", custom.getTitle(), "test#2");
+    assertNull("全て読み込んだ", reader.next());
+    assertEquals("XSB形式の幅", xsb.getState().getMap().getWidth(), 10);
+    assertEquals("短い行は壁で埋める", xsb.getState().getMap().getCellType(19), Map.WALL);
+    assertEquals("ゴールの数", xsb.getState().getMap().getGoalIndices().length, 3);
+    assertEquals("独自形式は同じ状態", custom.getState(), map);
+  }
+
+  /**
+   * 行末に空白がある独自形式の問題を、XSB形式と間違えずに読み込めるかテストします
+   */
+  @Test
+  public void levelReaderTrailingSpaceTest() throws Exception{
+    String level = testMap.replaceFirst("\n", " \n").replace("#.@...*.#\n", "#.@...*.#  \n") + "\n";
+    LevelReader reader = new LevelReader(java.nio.ByteBuffer.wrap(level.getBytes("UTF-8")), "test");
+    MapState state = reader.next().getState();
+    assertEquals("独自形式のゴールの数", state.getMap().getGoalIndices().length, 3);
+    assertEquals("荷物の数", state.getLoadsCount(), 3);
+    assertEquals("キャラクターの位置", state.getChara(), map.getChara());
   }
   
 }
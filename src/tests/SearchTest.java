@@ -0,0 +1,255 @@
+/**
+ * 
+ */
+package tests;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import map.*;
+import main.*;
+import util.Direction;
+import deadlock.DeadlockChain;
+
+/**
+ * 探索エンジン用のテストケースクラスです
+ * @author giginet
+ *
+ */
+public class SearchTest{
+
+  /**
+   * A*、IDA*、並列A*、双方向探索、外部記憶の幅優先探索が同じ最短の押し回数の解を見つけるかテストします
+   */
+  @Test
+  public void engineTest(){
+    MapState state = MapState.parse(MapTest.testMap);
+    SearchEngine engines[] = {
+        new AStarEngine(DeadlockChain.createDefault()),
+        new IDAStarEngine(DeadlockChain.createDefault(), 1 << 10),
+        new ParallelAStarEngine(3),
+        new BidirectionalEngine(DeadlockChain.createDefault()),
+        new ExternalEngine(DeadlockChain.createDefault(), new File(System.getProperty("java.io.tmpdir")), 16)};
+    for(SearchEngine engine : engines){
+      List<Integer> pushes = engine.search(state, new SearchBudget());
+      assertNotNull("解が見つかる", pushes);
+      assertEquals("最短の押し回数", pushes.size(), 13);
+      List<MapState> states = new PushGenerator(state.getMap()).replay(state, pushes);
+      assertTrue("ゴールに到達する", states.get(states.size() - 1).isGoal());
+    }
+  }
+
+  /**
+   * 予算と中断で探索が打ち切られるかテストします
+   */
+  @Test
+  public void budgetTest(){
+    Solver solver = new Solver(new AStarEngine(DeadlockChain.createDefault()));
+    SolveResult result = solver.solve(MapTest.testMap);
+    assertTrue("解が見つかる", result.isSolved());
+    assertEquals("最短の押し回数", result.getPushCount(), 13);
+    List<MapState> states = result.getStates();
+    assertEquals("1歩ごとの状態", states.size(), result.getMoveCount() + 1);
+    assertTrue("ゴールに到達する", states.get(states.size() - 1).isGoal());
+    SolveResult limited = solver.solve(MapTest.testMap, new SearchBudget().setNodeLimit(2));
+    assertEquals("ノード数の上限", limited.getStatus(), SolveResult.Status.NodeLimit);
+    assertNull("解は返さない", limited.getPushes());
+    SearchBudget budget = new SearchBudget();
+    budget.cancel();
+    SolveResult cancelled = new Solver(new ParallelAStarEngine(2)).solve(MapTest.testMap, budget);
+    assertEquals("中断された", cancelled.getStatus(), SolveResult.Status.Cancelled);
+  }
+
+  /**
+   * 状態をその場で書き換える押し方と引き方が、取り消すと元の状態に戻るかテストします
+   */
+  @Test
+  public void makeUnmakeTest(){
+    PushGenerator generator = new PushGenerator(MapState.parse(MapTest.testMap).getMap());
+    MapState state = generator.normalize(MapState.parse(MapTest.testMap));
+    MapState original = state.deepClone();
+    int pushes[] = new int[state.getLoadsCount() * 4];
+    int count = generator.generate(state, pushes);
+    assertTrue("押し方がある", count > 0);
+    for(int i=0;i<count;++i){
+      MapState child = generator.apply(state, pushes[i]);
+      generator.make(state, pushes[i]);
+      assertEquals("コピーした子状態と同じ", state, child);
+      assertEquals("ハッシュ値も同じ", state.getHash(), child.getHash());
+      generator.unmake(state, pushes[i], original.getCharaIndex());
+      assertEquals("元に戻る", state, original);
+      assertEquals("ハッシュ値も元に戻る", state.getHash(), original.getHash());
+    }
+    count = generator.generatePulls(state, pushes);
+    for(int i=0;i<count;++i){
+      MapState parent = generator.applyPull(state, pushes[i]);
+      generator.makePull(state, pushes[i]);
+      assertEquals("コピーした親状態と同じ", state, parent);
+      generator.unmakePull(state, pushes[i], original.getCharaIndex());
+      assertEquals("元に戻る", state, original);
+      assertEquals("ハッシュ値も元に戻る", state.getHash(), original.getHash());
+    }
+  }
+
+  /**
+   * バケットによる優先度付きキューが、コストの小さい順、同じコストでは見積もりの小さい順に取り出すかテストします
+   */
+  @Test
+  public void bucketQueueTest(){
+    BucketQueue queue = new BucketQueue();
+    assertEquals("空のときは-1", queue.poll(), -1);
+    queue.add(0, 10, 4);
+    queue.add(1, 8, 8);
+    queue.add(2, 8, 3);
+    queue.add(3, 200, 0);
+    queue.add(4, 8, 3);
+    assertEquals("ノードの数", queue.size(), 5);
+    assertEquals("最小のコスト", queue.peekCost(), 8);
+    assertEquals("同じコストでは見積もりの小さいノード", queue.poll(), 4);
+    assertEquals("同じバケットでは後から追加したノード", queue.poll(), 2);
+    assertEquals("見積もりの大きいノード", queue.poll(), 1);
+    queue.add(5, 9, 0);
+    assertEquals("後から小さいコストを追加", queue.poll(), 5);
+    assertEquals("次のコスト", queue.poll(), 0);
+    assertEquals("大きなコストでも取り出せる", queue.poll(), 3);
+    assertTrue("空になる", queue.isEmpty());
+  }
+
+  /**
+   * リスナーを設定すると、探索の終了時に途中経過の集計を受け取れるかテストします
+   */
+  @Test
+  public void metricsTest(){
+    final SolveResult finished[] = new SolveResult[1];
+    final SearchMetrics metrics[] = new SearchMetrics[1];
+    SearchBudget budget = new SearchBudget().setListener(new SearchListener(){
+      public void progress(SearchMetrics m){
+      }
+
+      public void finished(SearchMetrics m, SolveResult result){
+        metrics[0] = m;
+        finished[0] = result;
+      }
+    }, 0);
+    SolveResult result = new Solver(new AStarEngine(DeadlockChain.createDefault())).solve(MapTest.testMap, budget);
+    assertSame("終了時に結果を受け取る", finished[0], result);
+    assertEquals("展開したノード数", metrics[0].getExpanded(), result.getExpanded());
+    assertTrue("子状態を生成している", metrics[0].getGenerated() >= metrics[0].getDuplicates() + metrics[0].getDeadlocks());
+    assertTrue("置換表に登録している", metrics[0].getClosedSize() > 0);
+    assertEquals("最後に展開したノードのコスト", metrics[0].getBestCost(), 13);
+    assertNull("リスナーが無ければ集計しない", new SearchBudget().getMetrics());
+  }
+
+  /**
+   * 解のキャッシュが、回転や鏡映した問題にも向きを合わせた解を返し、ファイルから読み直せるかテストします
+   * @throws IOException 一時ファイルを作れないとき
+   */
+  @Test
+  public void cacheTest() throws IOException{
+    File file = File.createTempFile("cache", ".txt");
+    try{
+      SolutionCache cache = new SolutionCache(file, 1);
+      SolveResult solved = new Solver(new AStarEngine(DeadlockChain.createDefault()), cache).solve(MapTest.testMap);
+      assertTrue("解が見つかる", solved.isSolved());
+      // 探索エンジンを使わずに解けることを確かめる
+      SearchEngine none = new SearchEngine(){
+        public List<Integer> search(MapState start, SearchBudget budget){
+          return null;
+        }
+      };
+      for(Symmetry symmetry : Symmetry.ALL){
+        SolveResult result = new Solver(none, cache).solve(symmetry.transform(MapTest.testMap));
+        assertTrue("キャッシュから解が得られる", result.isSolved());
+        assertEquals("最短の押し回数", result.getPushCount(), 13);
+        List<MapState> states = result.getStates();
+        assertTrue("ゴールに到達する", states.get(states.size() - 1).isGoal());
+      }
+      cache.close();
+      SolutionCache reopened = new SolutionCache(file);
+      assertEquals("ファイルから読み直せる", reopened.size(), 1);
+      assertEquals("同じ解を返す", reopened.get(MapState.parse(MapTest.testMap)), solved.getSolution());
+      reopened.close();
+    }finally{
+      file.delete();
+    }
+  }
+
+  /**
+   * 対称な盤面で、回転や鏡映で重なる状態が同じキーになり、最短の解が得られるかテストします
+   */
+  @Test
+  public void symmetryTest(){
+    String level =
+        "#########\n" +
+        "#...#...#\n" +
+        "#.*...*.#\n" +
+        "#...G...#\n" +
+        "##.G@G.##\n" +
+        "#...G...#\n" +
+        "#.*..*..#\n" +
+        "#...#...#\n" +
+        "#########";
+    MapState state = MapState.parse(level);
+    assertEquals("8通りの対称性がある", state.getMap().getAutomorphisms().length, 7);
+    assertEquals("対称でない盤面", MapState.parse(MapTest.testMap).getMap().getAutomorphisms().length, 0);
+    long key = new PushGenerator(state.getMap()).keyOf(new PushGenerator(state.getMap()).normalize(state));
+    for(Symmetry symmetry : Symmetry.ALL){
+      MapState transformed = MapState.parse(symmetry.transform(level));
+      PushGenerator generator = new PushGenerator(transformed.getMap());
+      assertEquals("重なる状態は同じキー", generator.keyOf(generator.normalize(transformed)), key);
+    }
+    List<Integer> pushes = new AStarEngine(DeadlockChain.createDefault()).search(state, new SearchBudget());
+    assertNotNull("解が見つかる", pushes);
+    List<MapState> states = new PushGenerator(state.getMap()).replay(state, pushes);
+    assertTrue("ゴールに到達する", states.get(states.size() - 1).isGoal());
+  }
+
+  /**
+   * トンネルとゴール部屋のマクロの押し方が、取り消すと元に戻り、解が正しく展開されるかテストします
+   */
+  @Test
+  public void macroTest(){
+    String level =
+        "##########\n" +
+        "#####....#\n" +
+        "#GG.....@#\n" +
+        "#####.**.#\n" +
+        "#####....#\n" +
+        "##########";
+    MapState start = MapState.parse(level);
+    Map map = start.getMap();
+    assertEquals("ゴール部屋は1つ", map.getGoalRooms().length, 1);
+    assertEquals("入口から遠いゴールから埋める", map.getGoalRooms()[0].getSlot(0), map.indexOf(new Point(1, 2)));
+    assertTrue("横に押すトンネル", map.isTunnel(map.indexOf(new Point(4, 2)), Direction.West));
+    assertFalse("縦には押せない", map.isTunnel(map.indexOf(new Point(4, 2)), Direction.North));
+    // 通路の荷物は、押すとゴール部屋の奥のゴールまで続けて運ばれる
+    MapState entering = MapState.parse(level.replace("#GG.....@#", "#GG.*...@#").replace("#####.**.#", "#####..*.#"));
+    PushGenerator generator = new PushGenerator(entering.getMap());
+    generator.setMacros(true, true);
+    MapState state = generator.normalize(entering);
+    MapState original = state.deepClone();
+    int pushes[] = new int[state.getLoadsCount() * 4];
+    int count = generator.generate(state, pushes), macros = 0;
+    for(int i=0;i<count;++i){
+      if(generator.lengthOf(pushes[i]) > 1) ++macros;
+      MapState child = generator.apply(state, pushes[i]);
+      generator.make(state, pushes[i]);
+      assertEquals("コピーした子状態と同じ", state, child);
+      generator.unmake(state, pushes[i], original.getCharaIndex());
+      assertEquals("元に戻る", state, original);
+      assertEquals("ハッシュ値も元に戻る", state.getHash(), original.getHash());
+    }
+    assertTrue("マクロの押し方がある", macros > 0);
+    List<Integer> optimal = new AStarEngine(DeadlockChain.createDefault()).search(start, new SearchBudget());
+    List<Integer> pushesWithRooms = new AStarEngine(DeadlockChain.createDefault(), true).search(start, new SearchBudget());
+    assertNotNull("解が見つかる", pushesWithRooms);
+    List<MapState> states = new PushGenerator(map).replay(start, pushesWithRooms);
+    assertTrue("ゴールに到達する", states.get(states.size() - 1).isGoal());
+    assertTrue("押す回数は最小の解以上", pushesWithRooms.size() >= optimal.size());
+  }
+}
@@ -20,5 +20,15 @@ public enum Direction{
   South,
   SouthWest,
   West,
-  NorthWest
+  NorthWest;
+  
+  static private final Direction[] VALUES = values();
+  
+  /**
+   * 逆向きの方向を返します
+   * @return 逆向きの方向
+   */
+  public Direction reverse(){
+    return VALUES[(ordinal() + VALUES.length / 2) % VALUES.length];
+  }
 }
@@ -0,0 +1,177 @@
+/**
+ * 
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * ハンガリアン法で最小コストの完全マッチング（割り当て問題）を解くクラスです。<br>
+ * 行と列の数が同じn×nのコスト行列を受け取り、O(n^3)で解きます。
+ * 解いた後に1行だけコストが変わった場合は、双対変数を引き継いで1回の増加路探索だけで解き直せます（O(n^2)）。<br>
+ * コスト行列は、行iのコストがtable[offsets[i]]からn個並んでいる形で渡します。
+ * 作業用の配列はインスタンスで使い回すので、1つのインスタンスを複数のスレッドから同時に使わないでください
+ * @author giginet
+ *
+ */
+public class Hungarian{
+  /** 割り当てられないことを表すコストです。これ以上のコストは全て同じ扱いになります */
+  static public final int INFINITY = 1 << 24;
+
+  private int[] assignment = null;
+  private int[] minv = null;
+  private int size = 0;
+  private int[] u = null;
+  private boolean[] used = null;
+  private int[] v = null;
+  private int[] way = null;
+
+  /**
+   * コンストラクタ。n×nの問題を解くインスタンスを生成します
+   * @param size 行（列）の数
+   */
+  public Hungarian(int size){
+    this.size = size;
+    this.u = new int[size + 1];
+    this.v = new int[size + 1];
+    this.assignment = new int[size + 1];
+    this.way = new int[size + 1];
+    this.minv = new int[size + 1];
+    this.used = new boolean[size + 1];
+  }
+
+  /**
+   * 割り当て問題を解きます
+   * @param cost 行iを列jに割り当てるコストをcost[i*n+j]に格納した配列
+   * @return 最小の総コスト。完全な割り当てが存在しない場合はINFINITY
+   */
+  public int solve(int[] cost){
+    int offsets[] = new int[size];
+    for(int i=0;i<size;++i){
+      offsets[i] = i * size;
+    }
+    return solve(cost, offsets);
+  }
+
+  /**
+   * 割り当て問題を解きます
+   * @param table コストを格納した配列
+   * @param offsets 行iのコストが始まるtableの位置
+   * @return 最小の総コスト。完全な割り当てが存在しない場合はINFINITY
+   */
+  public int solve(int[] table, int[] offsets){
+    Arrays.fill(u, 0);
+    Arrays.fill(v, 0);
+    Arrays.fill(assignment, 0);
+    for(int i=1;i<=size;++i){
+      augment(table, offsets, i);
+    }
+    return total(table, offsets);
+  }
+
+  /**
+   * 直前に解いた問題から、ある1行のコストだけが変わった問題を解き直します。<br>
+   * その行の割り当てを外し、双対変数の実行可能性を保つように調整してから、その行だけ増加路を探します
+   * @param table コストを格納した配列
+   * @param offsets 行iのコストが始まるtableの位置。変わった行の位置は新しいものにしておきます
+   * @param row コストが変わった行の番号（0から始まる）
+   * @return 最小の総コスト。完全な割り当てが存在しない場合はINFINITY
+   */
+  public int repair(int[] table, int[] offsets, int row){
+    int i = row + 1;
+    for(int j=1;j<=size;++j){
+      if(assignment[j] == i){
+        assignment[j] = 0;
+        break;
+      }
+    }
+    int min = Integer.MAX_VALUE;
+    for(int j=1;j<=size;++j){
+      int current = table[offsets[row] + j - 1] - v[j];
+      if(current < min) min = current;
+    }
+    u[i] = min;
+    augment(table, offsets, i);
+    return total(table, offsets);
+  }
+
+  /**
+   * 他のインスタンスが解いた結果（双対変数と割り当て）をこのインスタンスに写します
+   * @param other 写す元のインスタンス。同じ大きさである必要があります
+   */
+  public void copyFrom(Hungarian other){
+    System.arraycopy(other.u, 0, u, 0, size + 1);
+    System.arraycopy(other.v, 0, v, 0, size + 1);
+    System.arraycopy(other.assignment, 0, assignment, 0, size + 1);
+  }
+
+  /**
+   * 直前に解いた問題で、ある列に割り当てられた行を返します
+   * @param column 列の番号（0から始まる）
+   * @return 割り当てられた行の番号（0から始まる）
+   */
+  public int rowOf(int column){
+    return assignment[column + 1] - 1;
+  }
+
+  /**
+   * まだ割り当てられていない行iから、空いている列への最短の増加路を探して割り当てを1つ増やします
+   * @param table コストを格納した配列
+   * @param offsets 行iのコストが始まるtableの位置
+   * @param i 行の番号（1から始まる）
+   */
+  private void augment(int[] table, int[] offsets, int i){
+    assignment[0] = i;
+    int j0 = 0;
+    Arrays.fill(minv, Integer.MAX_VALUE);
+    Arrays.fill(used, false);
+    do{
+      used[j0] = true;
+      int i0 = assignment[j0];
+      int delta = Integer.MAX_VALUE;
+      int j1 = 0;
+      int offset = offsets[i0 - 1] - 1;
+      for(int j=1;j<=size;++j){
+        if(used[j]) continue;
+        int current = table[offset + j] - u[i0] - v[j];
+        if(current < minv[j]){
+          minv[j] = current;
+          way[j] = j0;
+        }
+        if(minv[j] < delta){
+          delta = minv[j];
+          j1 = j;
+        }
+      }
+      for(int j=0;j<=size;++j){
+        if(used[j]){
+          u[assignment[j]] += delta;
+          v[j] -= delta;
+        }else{
+          minv[j] -= delta;
+        }
+      }
+      j0 = j1;
+    }while(assignment[j0] != 0);
+    do{
+      int j1 = way[j0];
+      assignment[j0] = assignment[j1];
+      j0 = j1;
+    }while(j0 != 0);
+  }
+
+  /**
+   * 現在の割り当ての総コストを求めます
+   * @param table コストを格納した配列
+   * @param offsets 行iのコストが始まるtableの位置
+   * @return 総コスト。INFINITY以上になった場合はINFINITY
+   */
+  private int total(int[] table, int[] offsets){
+    int total = 0;
+    for(int j=1;j<=size;++j){
+      total += table[offsets[assignment[j] - 1] + j - 1];
+      if(total >= INFINITY) return INFINITY;
+    }
+    return total;
+  }
+}